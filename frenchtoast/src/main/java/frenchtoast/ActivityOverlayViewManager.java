@@ -0,0 +1,146 @@
+package frenchtoast;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.graphics.Rect;
+import android.support.annotation.MainThread;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewManager;
+import android.view.ViewParent;
+import android.view.WindowManager;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+import static android.os.Build.VERSION_CODES.JELLY_BEAN_MR2;
+import static android.view.View.MeasureSpec.AT_MOST;
+import static android.view.View.MeasureSpec.makeMeasureSpec;
+import static frenchtoast.ToastInternals.assertMainThread;
+import static frenchtoast.ToastInternals.windowManager;
+
+/**
+ * Adds toast views to the overlay of the decor view of the resumed activity instead of adding a
+ * window, so that showing and hiding a toast only changes the view tree. The view is positioned
+ * in the overlay the way the window manager would position a toast window, and positioned again
+ * whenever the decor view is laid out with a new size. Falls back to adding a window when no
+ * activity is resumed. Only created from API 18, which added overlays.
+ */
+@TargetApi(JELLY_BEAN_MR2)
+final class ActivityOverlayViewManager implements ViewManager {
+
+  private final Rect containerRect = new Rect();
+  private final Rect viewRect = new Rect();
+  /** The views in an overlay, with the params they were last laid out with. */
+  private final Map<View, WindowManager.LayoutParams> overlayViews = new HashMap<>();
+  /**
+   * Lays the views out again when the decor view changes size, e.g. on its first layout after the
+   * activity resumed, for a configuration change the activity handles or in multi-window.
+   */
+  private final View.OnLayoutChangeListener relayout = new View.OnLayoutChangeListener() {
+    @Override public void onLayoutChange(View hostView, int left, int top, int right, int bottom,
+        int oldLeft, int oldTop, int oldRight, int oldBottom) {
+      if (right - left == oldRight - oldLeft && bottom - top == oldBottom - oldTop) {
+        return;
+      }
+      for (Map.Entry<View, WindowManager.LayoutParams> entry : overlayViews.entrySet()) {
+        View view = entry.getKey();
+        if (view.getParent() instanceof ViewGroup) {
+          layout((View) view.getParent(), view, entry.getValue());
+        }
+      }
+    }
+  };
+  /** Weak so that an activity which pause callback was skipped can still be collected. */
+  private WeakReference<View> decorViewRefOrNull;
+
+  @MainThread void onActivityResumed(Activity activity) {
+    clearDecorView();
+    View decorView = activity.getWindow().getDecorView();
+    decorView.addOnLayoutChangeListener(relayout);
+    decorViewRefOrNull = new WeakReference<>(decorView);
+  }
+
+  @MainThread void onActivityPaused(Activity activity) {
+    if (decorViewOrNull() == activity.getWindow().peekDecorView()) {
+      clearDecorView();
+    }
+  }
+
+  private void clearDecorView() {
+    ViewGroup decorView = decorViewOrNull();
+    if (decorView != null) {
+      decorView.removeOnLayoutChangeListener(relayout);
+    }
+    decorViewRefOrNull = null;
+  }
+
+  @Override public void addView(View view, ViewGroup.LayoutParams params) {
+    assertMainThread();
+    ViewGroup decorView = decorViewOrNull();
+    if (decorView == null) {
+      windowManager(view.getContext()).addView(view, params);
+      return;
+    }
+    WindowManager.LayoutParams windowParams = (WindowManager.LayoutParams) params;
+    decorView.getOverlay().add(view);
+    overlayViews.put(view, windowParams);
+    layout(decorView, view, windowParams);
+  }
+
+  @Override public void updateViewLayout(View view, ViewGroup.LayoutParams params) {
+    assertMainThread();
+    ViewParent parent = view.getParent();
+    if (!(parent instanceof ViewGroup)) {
+      windowManager(view.getContext()).updateViewLayout(view, params);
+      return;
+    }
+    WindowManager.LayoutParams windowParams = (WindowManager.LayoutParams) params;
+    overlayViews.put(view, windowParams);
+    // The overlay has the size of its host.
+    layout((View) parent, view, windowParams);
+  }
+
+  @Override public void removeView(View view) {
+    assertMainThread();
+    ViewParent parent = view.getParent();
+    if (!(parent instanceof ViewGroup)) {
+      // The parent of a view added as a window is its view root, which isn't a ViewGroup.
+      windowManager(view.getContext()).removeView(view);
+      return;
+    }
+    overlayViews.remove(view);
+    ((ViewGroup) parent).removeView(view);
+  }
+
+  private ViewGroup decorViewOrNull() {
+    if (decorViewRefOrNull == null) {
+      return null;
+    }
+    View decorView = decorViewRefOrNull.get();
+    if (!(decorView instanceof ViewGroup)) {
+      return null;
+    }
+    return (ViewGroup) decorView;
+  }
+
+  /**
+   * Measures the view against the host and applies the toast gravity, offsets and margins. Does
+   * nothing until the host is laid out, {@link #relayout} then lays the view out.
+   */
+  private void layout(View hostView, View view, WindowManager.LayoutParams params) {
+    int hostWidth = hostView.getWidth();
+    int hostHeight = hostView.getHeight();
+    if (hostWidth == 0 && hostHeight == 0) {
+      return;
+    }
+    view.measure(makeMeasureSpec(hostWidth, AT_MOST), makeMeasureSpec(hostHeight, AT_MOST));
+    containerRect.set(0, 0, hostWidth, hostHeight);
+    int xAdjust = params.x + (int) (params.horizontalMargin * hostWidth);
+    int yAdjust = params.y + (int) (params.verticalMargin * hostHeight);
+    Gravity.apply(params.gravity, view.getMeasuredWidth(), view.getMeasuredHeight(),
+        containerRect, xAdjust, yAdjust, viewRect);
+    view.layout(viewRect.left, viewRect.top, viewRect.right, viewRect.bottom);
+  }
+}
@@ -1,50 +1,135 @@
 package frenchtoast;
 
-import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.Application;
 import android.content.Context;
 import android.content.ContextWrapper;
 import android.os.Bundle;
+import android.os.Looper;
+import android.support.annotation.AnyThread;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.StringRes;
-import android.view.LayoutInflater;
-import android.view.View;
+import android.util.SparseArray;
 import android.widget.Toast;
-import java.util.LinkedHashMap;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static android.widget.Toast.LENGTH_SHORT;
 import static frenchtoast.ToastInternals.MAIN_HANDLER;
 import static frenchtoast.ToastInternals.assertMainThread;
 import static frenchtoast.ToastInternals.checkNotNull;
 
 public final class FrenchToast {
 
-  private static QueueHolder queueHolder;
+  /** Volatile so that {@link #withAnyThread(Context)} sees it from any thread once installed. */
+  private static volatile QueueHolder queueHolder;
 
   @MainThread public static void install(@NonNull Application application) {
+    install(application, QueueConfig.DEFAULT);
+  }
+
+  /**
+   * @param queueConfig the config of the toast queue created for each activity.
+   */
+  @MainThread public static void install(@NonNull Application application,
+      @NonNull QueueConfig queueConfig) {
     assertMainThread();
     checkNotNull(application, "application");
+    checkNotNull(queueConfig, "queueConfig");
     if (queueHolder != null) {
       throw new IllegalStateException("Already installed.");
     }
-    queueHolder = new QueueHolder();
+    queueHolder = new QueueHolder(queueConfig);
     application.registerActivityLifecycleCallbacks(queueHolder);
+    application.registerComponentCallbacks(queueHolder.viewPool);
+    if (queueConfig.prewarmLayoutResIdsOrNull != null) {
+      Looper.myQueue().addIdleHandler(new Prewarmer(application, queueHolder.viewPool,
+          queueConfig.prewarmLayoutResIdsOrNull, queueConfig.traceSections));
+    }
   }
 
+  /**
+   * Returns the toaster of the activity that the context is or wraps. When the queue is
+   * application scoped, any context works, e.g. the application context. The returned toaster is
+   * immutable and cached, so this can be called for every toast.
+   */
   @MainThread public static SmartToaster with(@NonNull Context context) {
     assertMainThread();
     checkNotNull(context, "context");
-    Activity activity = unwrapActivity(context);
-    return new ActivityToaster(activity);
+    return installedQueueHolder().toaster(context);
+  }
+
+  /**
+   * Same as {@link #with(Context)}, but can be called from any thread. Toasts are handed over to
+   * the main thread, where all toasts submitted since the previous handover are enqueued in one
+   * batch. Toasts submitted for an activity that is destroyed by then are ignored.
+   */
+  @AnyThread public static SmartToaster withAnyThread(@NonNull Context context) {
+    checkNotNull(context, "context");
+    QueueHolder queueHolder = installedQueueHolder();
+    Activity activity = findActivity(context);
+    if (activity != null) {
+      return new AnyThreadToaster(queueHolder, activity);
+    }
+    if (!queueHolder.queueConfig.applicationScoped) {
+      throw noActivityFound(context);
+    }
+    return new AnyThreadToaster(queueHolder, context.getApplicationContext());
+  }
+
+  /**
+   * Returns how many toasts of that category were throttled since FrenchToast was installed.
+   *
+   * @see SmartToaster#throttle(Object, ThrottlePolicy)
+   */
+  @MainThread public static long throttledCount(@NonNull Object category) {
+    assertMainThread();
+    checkNotNull(category, "category");
+    Throttle throttle = installedQueueHolder().throttles.get(category);
+    if (throttle == null) {
+      return 0;
+    }
+    return throttle.throttledCount;
+  }
+
+  /**
+   * Returns how many toasts the queue of the activity that the context is or wraps dropped because
+   * it was full, or the application queue if the config is application scoped. A queue kept
+   * across a configuration change keeps counting.
+   *
+   * @see QueueConfig.Builder#capacity(int, OverflowPolicy)
+   */
+  @MainThread public static long droppedCount(@NonNull Context context) {
+    assertMainThread();
+    checkNotNull(context, "context");
+    return installedQueueHolder().droppedCount(context);
+  }
+
+  private static QueueHolder installedQueueHolder() {
+    QueueHolder installedQueueHolder = queueHolder;
+    if (installedQueueHolder == null) {
+      throw new IllegalStateException("Call FrenchToast.install() from Application.onCreate()");
+    }
+    return installedQueueHolder;
   }
 
   private static Activity unwrapActivity(Context context) {
+    Activity activity = findActivity(context);
+    if (activity == null) {
+      throw noActivityFound(context);
+    }
+    return activity;
+  }
+
+  /** Returns the activity that the context is or wraps, or null. */
+  private static Activity findActivity(Context context) {
     Context appContext = context.getApplicationContext();
     Context unwrapped = context;
     for (; ; ) {
@@ -52,99 +137,418 @@ public final class FrenchToast {
         return (Activity) unwrapped;
       }
       if (unwrapped == null || unwrapped == appContext || !(unwrapped instanceof ContextWrapper)) {
-        throw new IllegalArgumentException(
-            "Could not find Activity in the chain of wrapped contexts from " + context);
+        return null;
       }
       Context baseContext = ((ContextWrapper) unwrapped).getBaseContext();
       if (baseContext == unwrapped) {
-        throw new IllegalArgumentException(
-            "Could not find Activity in the chain of wrapped contexts from " + context);
+        return null;
       }
       unwrapped = baseContext;
     }
   }
 
+  private static IllegalArgumentException noActivityFound(Context context) {
+    return new IllegalArgumentException("Could not find Activity in the chain of wrapped contexts "
+        + "from " + context + ", which is required unless the queue is application scoped");
+  }
+
   static final class Holder {
+    final QueueHolder queueHolder;
+    /**
+     * The activity, or the application for {@link QueueHolder#applicationHolderOrNull}. Weak, see
+     * {@link QueueHolder#createdActivities}. Reused by {@link QueueHolder#toaster}.
+     */
+    final WeakReference<Context> contextRef;
+    /** Toasters have no config by default, so every activity can share the same two. */
+    final ActivityToaster longToaster;
+    final ActivityToaster shortToaster;
     boolean paused;
+    boolean destroyed;
     LifecycleToastQueue queueOrNull;
-    String savedUniqueId;
+    /** Set when the activity state is saved, until it resumes. 0 otherwise. */
+    int savedQueueId;
+
+    Holder(QueueHolder queueHolder, Context context) {
+      this.queueHolder = queueHolder;
+      contextRef = new WeakReference<>(context);
+      Context appContext = context.getApplicationContext();
+      longToaster = new ActivityToaster(this, appContext, ToastOptions.LONG);
+      shortToaster = new ActivityToaster(this, appContext, ToastOptions.SHORT);
+    }
   }
 
-  static final class ActivityToaster implements SmartToaster {
-
-  /*
-   * Constants based on https://github.com/android/platform_frameworks_base/blob/master/services/
-   * core/java/com/android/server/notification/NotificationManagerService.java#L140
+  /**
+   * Immutable, so that each activity can keep toasters that {@link #with(Context)} returns again
+   * and again. Configuring a toaster returns a copy, or a cached toaster when there's one.
    */
+  static final class ActivityToaster implements SmartToaster {
 
-    private static final int ANDROID_LONG_DELAY_MS = 3_500;
-    private static final int ANDROID_SHORT_DELAY_MS = 2_000;
-    private static final int IGNORED = LENGTH_SHORT;
-
-    private final Activity activity;
-    private long durationMs = ANDROID_LONG_DELAY_MS;
+    final Holder holder;
+    final Context appContext;
+    final ToastOptions options;
 
-    ActivityToaster(Activity activity) {
-      this.activity = activity;
+    ActivityToaster(Holder holder, Context appContext, ToastOptions options) {
+      this.holder = holder;
+      this.appContext = appContext;
+      this.options = options;
     }
 
     @Override @MainThread public Toaster shortLength() {
       assertMainThread();
-      durationMs = ANDROID_SHORT_DELAY_MS;
-      return this;
+      return withDuration(ToastOptions.ANDROID_SHORT_DELAY_MS);
     }
 
     @Override @MainThread public Toaster longLength() {
       assertMainThread();
-      durationMs = ANDROID_LONG_DELAY_MS;
-      return this;
+      return withDuration(ToastOptions.ANDROID_LONG_DELAY_MS);
     }
 
     @Override @MainThread public Toaster length(long duration, TimeUnit timeUnit) {
       assertMainThread();
-      durationMs = timeUnit.toMillis(duration);
-      return this;
+      return withDuration(timeUnit.toMillis(duration));
+    }
+
+    private ActivityToaster withDuration(long durationMs) {
+      if (options.hasDefaultsBesidesDuration()) {
+        if (durationMs == ToastOptions.ANDROID_LONG_DELAY_MS) {
+          return holder.longToaster;
+        }
+        if (durationMs == ToastOptions.ANDROID_SHORT_DELAY_MS) {
+          return holder.shortToaster;
+        }
+      }
+      return withOptions(options.withDuration(durationMs));
+    }
+
+    private ActivityToaster withOptions(ToastOptions options) {
+      if (options == this.options) {
+        return this;
+      }
+      return new ActivityToaster(holder, appContext, options);
     }
 
     @Override @MainThread public void clear() {
       assertMainThread();
-      queueHolder.clear(activity);
+      holder.queueHolder.clear(holder);
+    }
+
+    @Override @MainThread public SmartToaster dedupe(Object key) {
+      assertMainThread();
+      checkNotNull(key, "key");
+      return withOptions(options.withDedupe(key, false));
+    }
+
+    @Override @MainThread public SmartToaster dedupeAndRestart(Object key) {
+      assertMainThread();
+      checkNotNull(key, "key");
+      return withOptions(options.withDedupe(key, true));
+    }
+
+    @Override @MainThread public SmartToaster priority(int priority) {
+      assertMainThread();
+      return withOptions(options.withPriority(priority));
     }
 
-    @Override public Toasted showText(CharSequence text) {
-      @SuppressLint("ShowToast") Toast toast =
-          Toast.makeText(activity.getApplicationContext(), text, IGNORED);
-      return showDipped(toast);
+    @Override @MainThread public SmartToaster interrupting() {
+      assertMainThread();
+      return withOptions(options.withInterrupt());
     }
 
-    @Override public Toasted showText(@StringRes int stringResId) {
-      @SuppressLint("ShowToast") Toast toast =
-          Toast.makeText(activity.getApplicationContext(), stringResId, IGNORED);
-      return showDipped(toast);
+    @Override @MainThread public SmartToaster throttle(Object category, ThrottlePolicy policy) {
+      assertMainThread();
+      checkNotNull(category, "category");
+      checkNotNull(policy, "policy");
+      return withOptions(options.withThrottle(category, policy));
     }
 
-    @Override public Toasted showLayout(@LayoutRes int layoutResId) {
-      Context context = activity.getApplicationContext();
-      View view = LayoutInflater.from(context).inflate(layoutResId, null);
-      Toast toast = new Toast(context);
-      toast.setView(view);
-      return showDipped(toast);
+    @Override @MainThread public Toasted showText(CharSequence text) {
+      assertMainThread();
+      Toasted skipped = skip();
+      if (skipped != null) {
+        return skipped;
+      }
+      return showTextNow(text);
+    }
+
+    @Override @MainThread public Toasted showText(@StringRes int stringResId) {
+      assertMainThread();
+      Toasted skipped = skip();
+      if (skipped != null) {
+        return skipped;
+      }
+      return showTextNow(appContext.getText(stringResId));
+    }
+
+    private Toasted showTextNow(final CharSequence text) {
+      return show(new Recipe() {
+        @Override public Mixture mix() {
+          return holder.queueHolder.viewPool.mixText(appContext, text);
+        }
+      });
+    }
+
+    @Override @MainThread public Toasted showLayout(@LayoutRes final int layoutResId) {
+      assertMainThread();
+      Toasted skipped = skip();
+      if (skipped != null) {
+        return skipped;
+      }
+      if (holder.queueHolder.queueConfig.deferInflation) {
+        // Throws Resources.NotFoundException now for an unknown id, rather than when it shows.
+        appContext.getResources().getResourceTypeName(layoutResId);
+      }
+      return show(new Recipe() {
+        @Override public Mixture mix() {
+          return holder.queueHolder.viewPool.mixLayout(appContext, layoutResId);
+        }
+      });
     }
 
     @Override @MainThread public Toasted showDipped(Toast toast) {
       assertMainThread();
-      Mixture mixture = Mixture.dip(toast);
-      ToastQueue queue = queueHolder.getOrCreateActivityToastQueue(activity);
-      queue.enqueue(mixture, durationMs);
-      return new Toasted(queue, mixture);
+      Toasted skipped = skip();
+      if (skipped != null) {
+        return skipped;
+      }
+      LifecycleToastQueue queue = holder.queueHolder.getOrCreateToastQueue(holder);
+      return queue.enqueue(Mixture.dip(toast), null, options.durationMs, options.dedupeKey,
+          options.priority, options.interrupt);
+    }
+
+    /**
+     * Returns what to return instead of showing a new toast if it's a duplicate or throttled, or
+     * null. Throttled toasts are not counted for duplicates.
+     */
+    private Toasted skip() {
+      if (options.dedupeKey != null) {
+        LifecycleToastQueue queue = holder.queueHolder.getOrCreateToastQueue(holder);
+        Toasted deduped = queue.coalesce(options.dedupeKey, options.restartDeduped);
+        if (deduped != null) {
+          return deduped;
+        }
+      }
+      if (options.throttleCategory != null
+          && holder.queueHolder.throttle(options.throttleCategory, options.throttlePolicy)) {
+        return Toasted.NOT_ENQUEUED;
+      }
+      return null;
+    }
+
+    private Toasted show(Recipe recipe) {
+      LifecycleToastQueue queue = holder.queueHolder.getOrCreateToastQueue(holder);
+      if (holder.queueHolder.queueConfig.deferInflation) {
+        return queue.enqueue(null, recipe, options.durationMs, options.dedupeKey,
+            options.priority, options.interrupt);
+      }
+      return queue.enqueue(recipe.mix(), null, options.durationMs, options.dedupeKey,
+          options.priority, options.interrupt);
+    }
+  }
+
+  /**
+   * The state of a throttle category. Toasts are counted when they're enqueued, i.e. when the
+   * throttle lets them through, not when they show.
+   */
+  static final class Throttle {
+    /** Ring buffer of when the last toasts were enqueued, sized to the max toasts per window. */
+    long[] acquiredUptimeMs = new long[0];
+    int nextIndex;
+    long acquiredCount;
+    long lastAcquiredUptimeMs;
+    long throttledCount;
+
+    /** Returns true and records an enqueued toast if the policy allows one to be enqueued now. */
+    boolean tryAcquire(ThrottlePolicy policy, long nowUptimeMs) {
+      if (acquiredCount > 0 && nowUptimeMs - lastAcquiredUptimeMs < policy.minGapMs) {
+        return false;
+      }
+      if (policy.maxToasts > 0) {
+        if (acquiredUptimeMs.length != policy.maxToasts) {
+          // The category is now used with another policy, previous toasts are forgotten.
+          acquiredUptimeMs = new long[policy.maxToasts];
+          nextIndex = 0;
+          acquiredCount = 0;
+        }
+        // The oldest of the last maxToasts toasts, only meaningful once that many were enqueued.
+        long oldestUptimeMs = acquiredUptimeMs[nextIndex];
+        if (acquiredCount >= policy.maxToasts && nowUptimeMs - oldestUptimeMs < policy.windowMs) {
+          return false;
+        }
+        acquiredUptimeMs[nextIndex] = nowUptimeMs;
+        nextIndex = (nextIndex + 1) % policy.maxToasts;
+      }
+      acquiredCount++;
+      lastAcquiredUptimeMs = nowUptimeMs;
+      return true;
+    }
+  }
+
+  /** A toast request made from any thread, to be run on the main thread. */
+  abstract static class Submission {
+    /** The activity, or the application when the queue is application scoped. */
+    Context context;
+    ToastOptions options;
+    Toasted toasted;
+
+    /** Returns null if nothing was shown. */
+    abstract Toasted run(ActivityToaster toaster);
+  }
+
+  /** Immutable like {@link ActivityToaster}, so that it can be shared between threads. */
+  static final class AnyThreadToaster implements SmartToaster {
+
+    private final QueueHolder queueHolder;
+    /**
+     * The activity, or the application when the queue is application scoped. Weak so that a
+     * toaster kept by a background worker doesn't leak its activity.
+     */
+    private final WeakReference<Context> contextRef;
+    private final ToastOptions options;
+
+    AnyThreadToaster(QueueHolder queueHolder, Context context) {
+      this(queueHolder, new WeakReference<>(context), ToastOptions.LONG);
+    }
+
+    private AnyThreadToaster(QueueHolder queueHolder, WeakReference<Context> contextRef,
+        ToastOptions options) {
+      this.queueHolder = queueHolder;
+      this.contextRef = contextRef;
+      this.options = options;
+    }
+
+    @Override @AnyThread public Toaster shortLength() {
+      return withOptions(options.withDuration(ToastOptions.ANDROID_SHORT_DELAY_MS));
+    }
+
+    @Override @AnyThread public Toaster longLength() {
+      return withOptions(options.withDuration(ToastOptions.ANDROID_LONG_DELAY_MS));
+    }
+
+    @Override @AnyThread public Toaster length(long duration, TimeUnit timeUnit) {
+      return withOptions(options.withDuration(timeUnit.toMillis(duration)));
+    }
+
+    private AnyThreadToaster withOptions(ToastOptions options) {
+      if (options == this.options) {
+        return this;
+      }
+      return new AnyThreadToaster(queueHolder, contextRef, options);
+    }
+
+    @Override @AnyThread public SmartToaster dedupe(Object key) {
+      checkNotNull(key, "key");
+      return withOptions(options.withDedupe(key, false));
+    }
+
+    @Override @AnyThread public SmartToaster dedupeAndRestart(Object key) {
+      checkNotNull(key, "key");
+      return withOptions(options.withDedupe(key, true));
+    }
+
+    @Override @AnyThread public SmartToaster priority(int priority) {
+      return withOptions(options.withPriority(priority));
+    }
+
+    @Override @AnyThread public SmartToaster interrupting() {
+      return withOptions(options.withInterrupt());
+    }
+
+    @Override @AnyThread public SmartToaster throttle(Object category, ThrottlePolicy policy) {
+      checkNotNull(category, "category");
+      checkNotNull(policy, "policy");
+      return withOptions(options.withThrottle(category, policy));
+    }
+
+    @Override @AnyThread public void clear() {
+      submit(new Submission() {
+        @Override Toasted run(ActivityToaster toaster) {
+          toaster.clear();
+          return null;
+        }
+      });
+    }
+
+    @Override @AnyThread public Toasted showText(final CharSequence text) {
+      return submit(new Submission() {
+        @Override Toasted run(ActivityToaster toaster) {
+          return toaster.showText(text);
+        }
+      });
+    }
+
+    @Override @AnyThread public Toasted showText(@StringRes final int stringResId) {
+      return submit(new Submission() {
+        @Override Toasted run(ActivityToaster toaster) {
+          return toaster.showText(stringResId);
+        }
+      });
+    }
+
+    @Override @AnyThread public Toasted showLayout(@LayoutRes final int layoutResId) {
+      return submit(new Submission() {
+        @Override Toasted run(ActivityToaster toaster) {
+          return toaster.showLayout(layoutResId);
+        }
+      });
+    }
+
+    @Override @AnyThread public Toasted showDipped(final Toast toast) {
+      return submit(new Submission() {
+        @Override Toasted run(ActivityToaster toaster) {
+          return toaster.showDipped(toast);
+        }
+      });
+    }
+
+    private Toasted submit(Submission submission) {
+      Context context = contextRef.get();
+      if (context == null) {
+        return Toasted.NOT_ENQUEUED;
+      }
+      submission.context = context;
+      submission.options = options;
+      submission.toasted = new Toasted();
+      queueHolder.submit(submission);
+      return submission.toasted;
     }
   }
 
   static final class QueueHolder extends ActivityLifecycleCallbacksAdapter {
 
-    private static final String FRENCH_TOAST_ACTIVITY_UNIQUE_ID = "FRENCH_TOAST_ACTIVITY_UNIQUE_ID";
-    final Map<Activity, Holder> createdActivities = new LinkedHashMap<>();
-    final Map<String, LifecycleToastQueue> retainedQueues = new LinkedHashMap<>();
+    private static final String FRENCH_TOAST_QUEUE_ID = "FRENCH_TOAST_QUEUE_ID";
+    private static final int NO_QUEUE_ID = 0;
+    /**
+     * Weak keys, so that an activity which destroy callback was skipped can still be collected.
+     * Holders must only reference their activity weakly. Their queues hold on to pending toasts,
+     * so a dipped toast made with the activity context keeps the entry until the toast shows or
+     * the activity is destroyed, which clears the queue.
+     */
+    final Map<Activity, Holder> createdActivities = new WeakHashMap<>();
+    /**
+     * Queues of activities destroyed for a configuration change, until the new activity is created.
+     * Ids only need to be unique within the process: retained queues are cleared right after the
+     * message in which they were retained.
+     */
+    final SparseArray<LifecycleToastQueue> retainedQueues = new SparseArray<>(1);
+    private int lastQueueId = NO_QUEUE_ID;
+    final ViewPool viewPool = new ViewPool();
+    final QueueConfig queueConfig;
+    /** Runs the timers of every queue, so that they share a single pending message. */
+    final ToastScheduler scheduler;
+    /**
+     * Shared by all queues when toasts render in the activity: only the queue of the resumed
+     * activity shows toasts, and toasts are drawn in that activity.
+     */
+    final ActivityOverlayViewManager overlayViewManagerOrNull;
+
+    /** Lock free multiple producers queue, consumed on the main thread. */
+    final Queue<Submission> submissions = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean drainScheduled = new AtomicBoolean();
+    final Runnable drainSubmissions = new Runnable() {
+      @Override public void run() {
+        drainSubmissions();
+      }
+    };
 
     final Runnable clearRetainedQueues = new Runnable() {
       @Override public void run() {
@@ -152,30 +556,97 @@ public final class FrenchToast {
       }
     };
 
+    /**
+     * The only queue when the config is application scoped, in which case activities don't have
+     * their own queue. Paused whenever no activity is resumed.
+     */
+    final LifecycleToastQueue applicationQueueOrNull;
+    private int resumedActivityCount;
+    final Map<Object, Throttle> throttles = new HashMap<>();
+    /**
+     * The last context passed to {@link #toaster(Context)}, until its activity is destroyed. Weak
+     * in case the activity is never destroyed properly.
+     */
+    private WeakReference<Context> lastContextRefOrNull;
+    private ActivityToaster lastToasterOrNull;
+    /**
+     * Holds the toasters for contexts that aren't activities when the config is application scoped,
+     * created when first needed.
+     */
+    private Holder applicationHolderOrNull;
+
+    QueueHolder(QueueConfig queueConfig) {
+      this.queueConfig = queueConfig;
+      scheduler = LifecycleToastQueue.schedulerFor(queueConfig);
+      if (queueConfig.renderInActivity) {
+        overlayViewManagerOrNull = new ActivityOverlayViewManager();
+      } else {
+        overlayViewManagerOrNull = null;
+      }
+      if (queueConfig.applicationScoped) {
+        applicationQueueOrNull =
+            new LifecycleToastQueue(queueConfig, scheduler, overlayViewManagerOrNull);
+        applicationQueueOrNull.pause();
+      } else {
+        applicationQueueOrNull = null;
+      }
+    }
+
     @Override public void onActivityPaused(Activity activity) {
       Holder holder = createdActivities.get(activity);
       holder.paused = true;
       if (holder.queueOrNull != null) {
-        holder.queueOrNull.pause();
+        pause(activity, holder.queueOrNull);
+      }
+      if (applicationQueueOrNull != null) {
+        resumedActivityCount--;
+        if (resumedActivityCount == 0) {
+          pause(activity, applicationQueueOrNull);
+        }
+      }
+      if (overlayViewManagerOrNull != null) {
+        overlayViewManagerOrNull.onActivityPaused(activity);
+      }
+    }
+
+    private void pause(Activity activity, LifecycleToastQueue queue) {
+      // The toast window doesn't belong to the activity and can stay through its recreation,
+      // unless the toast is drawn in the activity.
+      if (activity.isChangingConfigurations() && overlayViewManagerOrNull == null) {
+        queue.pauseForConfigurationChange();
+      } else {
+        queue.pause();
       }
     }
 
     @Override public void onActivityResumed(Activity activity) {
+      if (overlayViewManagerOrNull != null) {
+        overlayViewManagerOrNull.onActivityResumed(activity);
+      }
       Holder holder = createdActivities.get(activity);
       holder.paused = false;
       if (holder.queueOrNull != null) {
         holder.queueOrNull.resume();
       }
-      holder.savedUniqueId = null;
+      holder.savedQueueId = NO_QUEUE_ID;
+      if (applicationQueueOrNull != null) {
+        resumedActivityCount++;
+        applicationQueueOrNull.resume();
+      }
     }
 
     @Override public void onActivityDestroyed(Activity activity) {
       Holder holder = createdActivities.remove(activity);
+      holder.destroyed = true;
+      if (lastToasterOrNull != null && lastToasterOrNull.holder == holder) {
+        lastContextRefOrNull = null;
+        lastToasterOrNull = null;
+      }
       if (holder.queueOrNull == null) {
         return;
       }
-      if (activity.isChangingConfigurations() && holder.savedUniqueId != null) {
-        retainedQueues.put(holder.savedUniqueId, holder.queueOrNull);
+      if (activity.isChangingConfigurations() && holder.savedQueueId != NO_QUEUE_ID) {
+        retainedQueues.put(holder.savedQueueId, holder.queueOrNull);
         // onCreate() is always called from the same message as the previous onDestroy().
         MAIN_HANDLER.post(clearRetainedQueues);
       } else {
@@ -183,42 +654,151 @@ public final class FrenchToast {
       }
     }
 
+    @AnyThread void submit(Submission submission) {
+      submissions.add(submission);
+      scheduleDrain();
+    }
+
+    @AnyThread private void scheduleDrain() {
+      if (drainScheduled.compareAndSet(false, true)) {
+        MAIN_HANDLER.post(drainSubmissions);
+      }
+    }
+
+    private void drainSubmissions() {
+      // Reset first: anything submitted from now on is either drained below or schedules a drain.
+      drainScheduled.set(false);
+      try {
+        for (Submission submission = submissions.poll(); submission != null;
+            submission = submissions.poll()) {
+          Holder holder = submission.context instanceof Activity
+              ? createdActivities.get(submission.context)
+              : applicationHolder(submission.context);
+          if (holder == null) {
+            continue;
+          }
+          if (submission.toasted != null && submission.toasted.isCanceled()) {
+            continue;
+          }
+          ActivityToaster toaster =
+              new ActivityToaster(holder, holder.longToaster.appContext, submission.options);
+          Toasted enqueued = submission.run(toaster);
+          if (enqueued != null) {
+            submission.toasted.attach(enqueued);
+          }
+        }
+      } finally {
+        // A submission that throws, e.g. for an unknown resource id, doesn't strand the next ones.
+        if (!submissions.isEmpty()) {
+          scheduleDrain();
+        }
+      }
+    }
+
     private void clearRetainedQueues() {
-      for (LifecycleToastQueue queue : retainedQueues.values()) {
-        queue.clear();
+      for (int i = 0, size = retainedQueues.size(); i < size; i++) {
+        retainedQueues.valueAt(i).clear();
       }
       retainedQueues.clear();
     }
 
     @Override public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
       Holder holder = createdActivities.get(activity);
-      String activityUniqueId = UUID.randomUUID().toString();
-      outState.putString(FRENCH_TOAST_ACTIVITY_UNIQUE_ID, activityUniqueId);
-      holder.savedUniqueId = activityUniqueId;
+      // Even without a queue: one may be created after the state is saved, e.g. by a toast shown
+      // from onStop(), and still has to be retained across a configuration change.
+      int queueId = ++lastQueueId;
+      outState.putInt(FRENCH_TOAST_QUEUE_ID, queueId);
+      holder.savedQueueId = queueId;
     }
 
     @Override public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
-      Holder holder = new Holder();
+      Holder holder = new Holder(this, activity);
       createdActivities.put(activity, holder);
-      if (!retainedQueues.isEmpty()) {
-        String uniqueId = savedInstanceState.getString(FRENCH_TOAST_ACTIVITY_UNIQUE_ID);
-        if (uniqueId != null) {
-          holder.queueOrNull = retainedQueues.remove(uniqueId);
+      if (retainedQueues.size() > 0 && savedInstanceState != null) {
+        int queueId = savedInstanceState.getInt(FRENCH_TOAST_QUEUE_ID, NO_QUEUE_ID);
+        if (queueId != NO_QUEUE_ID) {
+          holder.queueOrNull = retainedQueues.get(queueId);
+          retainedQueues.remove(queueId);
         }
       }
     }
 
-    void clear(Activity activity) {
-      Holder holder = getHolderOrThrow(activity);
-      if (holder.queueOrNull != null) {
+    /**
+     * Returns the default toaster of the activity. Calls in a row usually come from the same
+     * context, which is then only unwrapped once.
+     */
+    ActivityToaster toaster(Context context) {
+      if (lastContextRefOrNull != null && lastContextRefOrNull.get() == context) {
+        return lastToasterOrNull;
+      }
+      Activity activity = findActivity(context);
+      Holder holder;
+      if (activity != null) {
+        holder = getHolderOrThrow(activity);
+      } else if (applicationQueueOrNull != null) {
+        holder = applicationHolder(context);
+      } else {
+        throw noActivityFound(context);
+      }
+      // Most calls pass the activity itself, which the holder already has a reference to.
+      lastContextRefOrNull = context == holder.contextRef.get()
+          ? holder.contextRef : new WeakReference<>(context);
+      lastToasterOrNull = holder.longToaster;
+      return holder.longToaster;
+    }
+
+    private Holder applicationHolder(Context context) {
+      if (applicationHolderOrNull == null) {
+        applicationHolderOrNull = new Holder(this, context.getApplicationContext());
+      }
+      return applicationHolderOrNull;
+    }
+
+    long droppedCount(Context context) {
+      if (applicationQueueOrNull != null) {
+        return applicationQueueOrNull.droppedCount();
+      }
+      Holder holder = getHolderOrThrow(unwrapActivity(context));
+      if (holder.queueOrNull == null) {
+        return 0;
+      }
+      return holder.queueOrNull.droppedCount();
+    }
+
+    /** Returns true if a toast of that category should not show now, and counts it if so. */
+    boolean throttle(Object category, ThrottlePolicy policy) {
+      Throttle throttle = throttles.get(category);
+      if (throttle == null) {
+        throttle = new Throttle();
+        throttles.put(category, throttle);
+      }
+      if (throttle.tryAcquire(policy, scheduler.uptimeMillis())) {
+        return false;
+      }
+      throttle.throttledCount++;
+      if (queueConfig.metricsOrNull != null) {
+        queueConfig.metricsOrNull.onThrottled(category);
+      }
+      return true;
+    }
+
+    void clear(Holder holder) {
+      checkNotDestroyed(holder);
+      if (applicationQueueOrNull != null) {
+        applicationQueueOrNull.clear();
+      } else if (holder.queueOrNull != null) {
         holder.queueOrNull.clear();
       }
     }
 
-    ToastQueue getOrCreateActivityToastQueue(Activity activity) {
-      Holder holder = getHolderOrThrow(activity);
+    LifecycleToastQueue getOrCreateToastQueue(Holder holder) {
+      checkNotDestroyed(holder);
+      if (applicationQueueOrNull != null) {
+        return applicationQueueOrNull;
+      }
       if (holder.queueOrNull == null) {
-        LifecycleToastQueue toastQueue = new LifecycleToastQueue();
+        LifecycleToastQueue toastQueue =
+            new LifecycleToastQueue(queueConfig, scheduler, overlayViewManagerOrNull);
         if (holder.paused) {
           toastQueue.pause();
         }
@@ -239,6 +819,13 @@ public final class FrenchToast {
       }
       return holder;
     }
+
+    private void checkNotDestroyed(Holder holder) {
+      if (holder.destroyed) {
+        throw new IllegalStateException(
+            "Activity destroyed, make sure toasters are not used after onDestroy()");
+      }
+    }
   }
 
   private FrenchToast() {
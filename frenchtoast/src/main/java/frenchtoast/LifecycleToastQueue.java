@@ -1,96 +1,249 @@
 package frenchtoast;
 
+import android.annotation.TargetApi;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.support.annotation.MainThread;
+import android.view.Choreographer;
+import android.view.ViewManager;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
 
-import static frenchtoast.ToastInternals.MAIN_HANDLER;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN;
 import static frenchtoast.ToastInternals.assertMainThread;
+import static frenchtoast.ToastInternals.beginSection;
+import static frenchtoast.ToastInternals.checkNotNull;
+import static frenchtoast.ToastInternals.endSection;
 
 /**
  * A queue on which you can enqueue Toasts to show with a specific duration. One Toast
- * is shown at a time. You can tie this queue to a lifecycle (e.g. an activity) so that
- * the toasts are only displayed in the relevant context. If a Toast is displayed when the queue is
- * paused, then it's duration will be reset and it will be shown for its whole duration again when
- * the queue gets resumed. The queue is resumed by default.
+ * is shown at a time, unless a {@link QueueConfig} allows more to show stacked. You can tie this
+ * queue to a lifecycle (e.g. an activity) so that the toasts are only displayed in the relevant
+ * context. If a Toast is displayed when the queue is paused, then it's duration will be reset and
+ * it will be shown for its whole duration again when the queue gets resumed, unless it was paused
+ * for a configuration change: then the Toast stays on screen for the rest of its duration. A
+ * {@link QueueConfig} can make the queue show the Toast for the rest of its duration after any
+ * pause, and limit the number of toasts in the queue. The queue is resumed by default.
+ *
+ * <p>Toasts with a higher priority are shown first, and toasts with the same priority are shown in
+ * the order they were enqueued. A toast that is showing is never passed by a toast enqueued later
+ * unless that one is enqueued as interrupting.
  */
 public final class LifecycleToastQueue implements ToastQueue {
 
+  public static final int DEFAULT_PRIORITY = 0;
+
+  /**
+   * When transitions are aligned to frames, toasts hide in the frame closest to their deadline:
+   * the hide timer fires half a frame early, and toasts due within half a frame hide. Half a frame
+   * at 60 Hz, until the first toast of a queue shows and the refresh rate is read.
+   */
+  private static final long DEFAULT_HALF_FRAME_MS = 8;
+
+  /**
+   * A node of the intrusive doubly linked list of toasts. {@link Toasted} holds on to its node
+   * until it leaves the queue, so that it can be canceled in constant time.
+   */
   static final class EnqueuedToast {
-    final Mixture mixture;
+    /** Mixes the toast when it's about to show if it was enqueued without a mixture. */
+    final Recipe recipeOrNull;
     final long durationMs;
+    final Object dedupeKeyOrNull;
+    final int priority;
+    final Toasted toasted;
+
+    /** When this toast was enqueued, only set if there are metrics. -1 once it has shown. */
+    long enqueuedUptimeMs;
+    /** How long this toast still has to show, which is its whole duration unless it was paused. */
+    long remainingMs;
+    /** When this toast was last shown. */
+    long shownUptimeMs;
+    /** True when this toast is on screen. Showing toasts are always first in the queue. */
+    boolean showing;
+    /** When this toast should hide, only meaningful while it's showing. */
+    long hideUptimeMs;
+    /** Null once this toast left the queue, and until it's mixed if it has a recipe. */
+    Mixture mixtureOrNull;
+    /** Null when this toast isn't in a queue. Volatile so that other threads can read it. */
+    volatile LifecycleToastQueue queueOrNull;
+    EnqueuedToast previous;
+    EnqueuedToast next;
 
-    EnqueuedToast(Mixture mixture, long durationMs) {
-      this.mixture = mixture;
+    EnqueuedToast(Mixture mixtureOrNull, Recipe recipeOrNull, long durationMs,
+        Object dedupeKeyOrNull, int priority) {
+      this.mixtureOrNull = mixtureOrNull;
+      this.recipeOrNull = recipeOrNull;
       this.durationMs = durationMs;
+      remainingMs = durationMs;
+      this.dedupeKeyOrNull = dedupeKeyOrNull;
+      this.priority = priority;
+      toasted = new Toasted(this);
     }
 
-    @Override public boolean equals(Object other) {
-      if (!(other instanceof EnqueuedToast)) {
-        return false;
+    Mixture mixture() {
+      if (mixtureOrNull == null) {
+        mixtureOrNull = recipeOrNull.mix();
       }
-      EnqueuedToast that = (EnqueuedToast) other;
-      return mixture == that.mixture;
-    }
-
-    @Override public int hashCode() {
-      return System.identityHashCode(mixture);
+      return mixtureOrNull;
     }
   }
 
-  private final Deque<EnqueuedToast> toastDeque = new ArrayDeque<>();
+  private final Map<Object, EnqueuedToast> dedupedToasts = new HashMap<>();
 
-  private final Runnable hideToast = new Runnable() {
+  private final Runnable hideToasts = new Runnable() {
     @Override public void run() {
-      hideToast();
+      if (frameCallbackOrNull != null) {
+        scheduleTransition();
+      } else {
+        hideToasts();
+      }
+    }
+  };
+
+  private final MessageQueue.IdleHandler premeasureNextToast = new MessageQueue.IdleHandler() {
+    @Override public boolean queueIdle() {
+      premeasureScheduled = false;
+      premeasureNextToast();
+      return false;
     }
   };
 
+  private final QueueConfig config;
+  private final ToastMetrics metricsOrNull;
+  private final ToastScheduler scheduler;
+  private final ViewManager viewManagerOrNull;
+  /** Scheduled for the toast that should hide first, when toasts are showing. */
+  private final ToastScheduler.Timer hideTimer = new ToastScheduler.Timer(hideToasts);
+  /** Runs the transitions at the start of a frame, null unless they're aligned to frames. */
+  private final Choreographer.FrameCallback frameCallbackOrNull;
+  /**
+   * How early toasts may hide, to hide in the frame closest to their deadline. Half a frame at the
+   * refresh rate of the default display of the application window manager, read once when the
+   * first toast of this queue shows rather than on every show.
+   */
+  private long hideSlackMs;
+  private boolean hideSlackRead;
+
+  private EnqueuedToast head;
+  private EnqueuedToast tail;
+  private int size;
   private boolean paused;
+  /**
+   * How many toasts at the front of the queue are on screen, with their hide scheduled. That's
+   * usually at least one unless the queue is paused, but toasts keep showing across a
+   * configuration change.
+   */
+  private int showingCount;
+  private long droppedCount;
+  private boolean premeasureScheduled;
+  private boolean transitionScheduled;
 
   @MainThread public LifecycleToastQueue() {
+    this(QueueConfig.DEFAULT);
+  }
+
+  /**
+   * The timers of this queue run on the scheduler set with {@link
+   * QueueConfig.Builder#scheduler(ToastScheduler)}, or on a new one if none was set.
+   */
+  @MainThread public LifecycleToastQueue(QueueConfig config) {
+    this(config, schedulerFor(config), null);
+  }
+
+  /** @param viewManagerOrNull adds the toast views to the screen, or null to add windows. */
+  @MainThread LifecycleToastQueue(QueueConfig config, ToastScheduler scheduler,
+      ViewManager viewManagerOrNull) {
     assertMainThread();
+    this.config = checkNotNull(config, "config");
+    this.scheduler = checkNotNull(scheduler, "scheduler");
+    this.viewManagerOrNull = viewManagerOrNull;
+    metricsOrNull = config.metricsOrNull;
+    if (config.alignToFrames) {
+      frameCallbackOrNull = newFrameCallback();
+      hideSlackMs = DEFAULT_HALF_FRAME_MS;
+    } else {
+      frameCallbackOrNull = null;
+      hideSlackMs = 0;
+    }
+  }
+
+  @TargetApi(JELLY_BEAN) private Choreographer.FrameCallback newFrameCallback() {
+    return new Choreographer.FrameCallback() {
+      @Override public void doFrame(long frameTimeNanos) {
+        transitionScheduled = false;
+        hideToasts();
+      }
+    };
+  }
+
+  /** Returns half the frame interval of a display refreshing at that rate, in milliseconds. */
+  static long halfFrameMs(float refreshRate) {
+    if (refreshRate <= 0) {
+      return DEFAULT_HALF_FRAME_MS;
+    }
+    return (long) (500 / refreshRate);
+  }
+
+  static ToastScheduler schedulerFor(QueueConfig config) {
+    if (config.schedulerOrNull != null) {
+      return config.schedulerOrNull;
+    }
+    return new ToastScheduler();
+  }
+
+  /**
+   * Returns how many toasts were dropped because the queue was full when a toast was enqueued.
+   *
+   * @see QueueConfig.Builder#capacity(int, OverflowPolicy)
+   */
+  @MainThread public long droppedCount() {
+    assertMainThread();
+    return droppedCount;
   }
 
   @Override @MainThread public void clear() {
     assertMainThread();
-    if (toastDeque.isEmpty()) {
+    if (head == null) {
       return;
     }
-    if (!paused) {
-      EnqueuedToast firstToast = toastDeque.getFirst();
-      firstToast.mixture.hide();
-      MAIN_HANDLER.removeCallbacks(hideToast);
+    scheduler.cancel(hideTimer);
+    while (head != null) {
+      remove(head);
     }
-    toastDeque.clear();
   }
 
+  /**
+   * Cancels the first toast in this queue that shows that mixture. This walks the queue, prefer
+   * {@link Toasted#cancel()} which takes constant time.
+   */
   @Override @MainThread public boolean cancel(Mixture canceledMixture) {
     assertMainThread();
-    if (toastDeque.isEmpty()) {
-      return false;
-    }
-
-    boolean showNext = false;
-
-    if (!paused) {
-      EnqueuedToast firstToast = toastDeque.getFirst();
-      if (firstToast.mixture == canceledMixture) {
-        firstToast.mixture.hide();
-        MAIN_HANDLER.removeCallbacks(hideToast);
-        showNext = true;
+    for (EnqueuedToast node = head; node != null; node = node.next) {
+      if (node.mixtureOrNull == canceledMixture) {
+        return cancel(node);
       }
     }
+    return false;
+  }
 
-    EnqueuedToast toDelete = new EnqueuedToast(canceledMixture, 0);
-    boolean removed = toastDeque.remove(toDelete);
-
-    if (showNext) {
-      showFirstToast();
+  /**
+   * @return false if that toast was not in this queue anymore.
+   */
+  @MainThread boolean cancel(EnqueuedToast canceledToast) {
+    assertMainThread();
+    if (canceledToast.queueOrNull != this) {
+      return false;
     }
-
-    return removed;
+    boolean showing = canceledToast.showing;
+    remove(canceledToast);
+    if (metricsOrNull != null) {
+      metricsOrNull.onCanceled();
+    }
+    if (showing) {
+      showToastsOnFrame();
+    }
+    return true;
   }
 
   @MainThread public void pause() {
@@ -99,12 +252,24 @@ public final class LifecycleToastQueue implements ToastQueue {
       return;
     }
     paused = true;
-    if (toastDeque.isEmpty()) {
+    if (showingCount == 0) {
       return;
     }
-    EnqueuedToast firstToast = toastDeque.getFirst();
-    firstToast.mixture.hide();
-    MAIN_HANDLER.removeCallbacks(hideToast);
+    for (EnqueuedToast node = head; node != null && node.showing; node = node.next) {
+      interrupt(node);
+    }
+    scheduler.cancel(hideTimer);
+  }
+
+  /**
+   * Pauses the queue but leaves the toasts showing, with their hide still scheduled. Toast windows
+   * aren't tied to an activity window, so the toasts can stay on screen while the activity is
+   * recreated. When the queue is resumed, the toasts are not shown again and only stay for the
+   * rest of their duration. If a toast times out before that, the next one waits for the resume.
+   */
+  @MainThread void pauseForConfigurationChange() {
+    assertMainThread();
+    paused = true;
   }
 
   @MainThread public void resume() {
@@ -113,30 +278,446 @@ public final class LifecycleToastQueue implements ToastQueue {
       return;
     }
     paused = false;
-    showFirstToast();
+    showToastsOnFrame();
   }
 
   @Override @MainThread public void enqueue(Mixture mixture, long durationMs) {
+    enqueue(mixture, durationMs, DEFAULT_PRIORITY, false);
+  }
+
+  /**
+   * Enqueues a toast after all toasts that have the same or a higher priority.
+   *
+   * @param interrupt if true, no more toasts can show and the last toast that showed has a lower
+   * priority, that toast is hidden and will be shown again after this one and the other pending
+   * toasts of a higher priority, for its whole duration or, with {@link
+   * QueueConfig.Builder#resumeWithRemainingTime(long, java.util.concurrent.TimeUnit)}, for the rest
+   * of it.
+   */
+  @MainThread public void enqueue(Mixture mixture, long durationMs, int priority,
+      boolean interrupt) {
+    enqueue(checkNotNull(mixture, "mixture"), null, durationMs, null, priority, interrupt);
+  }
+
+  /**
+   * Enqueues a toast, either already mixed or as a recipe that will be mixed when the toast is
+   * about to show. If a dedupe key is provided, later calls to {@link #coalesce(Object, boolean)}
+   * with an equal key return the returned {@link Toasted} for as long as the toast is pending or
+   * showing. A key must not be reused while its toast is still in the queue.
+   */
+  @MainThread Toasted enqueue(Mixture mixtureOrNull, Recipe recipeOrNull, long durationMs,
+      Object dedupeKeyOrNull, int priority, boolean interrupt) {
     assertMainThread();
-    boolean empty = toastDeque.isEmpty();
-    toastDeque.add(new EnqueuedToast(mixture, durationMs));
-    if (empty) {
-      showFirstToast();
+    EnqueuedToast enqueuedToast =
+        new EnqueuedToast(mixtureOrNull, recipeOrNull, durationMs, dedupeKeyOrNull, priority);
+    if (metricsOrNull != null) {
+      enqueuedToast.enqueuedUptimeMs = scheduler.uptimeMillis();
+    }
+    if (size >= config.capacity) {
+      droppedCount++;
+      if (metricsOrNull != null) {
+        metricsOrNull.onDropped();
+      }
+      if (config.overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+        if (mixtureOrNull != null) {
+          mixtureOrNull.release();
+        }
+        return Toasted.NOT_ENQUEUED;
+      }
+      dropToastForOverflow();
+    }
+    if (interrupt && showingCount == config.maxVisible) {
+      EnqueuedToast lastShowing = lastShowingToast();
+      if (lastShowing.priority < priority) {
+        interrupt(lastShowing);
+        relinkInterrupted(lastShowing);
+      }
+    }
+    link(enqueuedToast);
+    if (metricsOrNull != null) {
+      metricsOrNull.onEnqueued(size);
+    }
+    if (dedupeKeyOrNull != null) {
+      dedupedToasts.put(dedupeKeyOrNull, enqueuedToast);
+    }
+    showToastsOnFrame();
+    schedulePremeasure();
+    return enqueuedToast.toasted;
+  }
+
+  /**
+   * Returns the {@link Toasted} of the pending or showing toast that was enqueued with an equal
+   * dedupe key, or null if there is none. If restartShowing is true and that toast is currently
+   * showing, it will stay on screen for its whole duration again, starting now.
+   */
+  @MainThread Toasted coalesce(Object dedupeKey, boolean restartShowing) {
+    assertMainThread();
+    EnqueuedToast enqueuedToast = dedupedToasts.get(dedupeKey);
+    if (enqueuedToast == null) {
+      return null;
+    }
+    if (restartShowing && enqueuedToast.showing) {
+      long nowUptimeMs = scheduler.uptimeMillis();
+      enqueuedToast.remainingMs = enqueuedToast.durationMs;
+      enqueuedToast.shownUptimeMs = nowUptimeMs;
+      enqueuedToast.hideUptimeMs = nowUptimeMs + enqueuedToast.durationMs;
+      scheduleHide();
+    }
+    return enqueuedToast.toasted;
+  }
+
+  /**
+   * Hides a showing toast, without rescheduling the hide timer. It will show again when it's
+   * back at the front of the queue, either for its whole duration or for the rest of it.
+   */
+  private void interrupt(EnqueuedToast showingToast) {
+    showingToast.mixture().hide();
+    showingToast.showing = false;
+    showingCount--;
+    if (config.resumeWithRemainingTime) {
+      long shownMs = scheduler.uptimeMillis() - showingToast.shownUptimeMs;
+      long minVisibleMs = Math.min(config.minVisibleMs, showingToast.durationMs);
+      showingToast.remainingMs = Math.max(showingToast.remainingMs - shownMs, minVisibleMs);
+    } else if (metricsOrNull != null) {
+      metricsOrNull.onDurationReset();
+    }
+  }
+
+  private void dropToastForOverflow() {
+    if (config.overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+      remove(oldestToastOfLowestPriority());
+    } else {
+      remove(tail);
+    }
+  }
+
+  /**
+   * Returns the oldest pending toast of the lowest priority in the queue, or the showing toast of
+   * that priority that showed first if none is pending. Toasts hidden by a pause stay ahead of the
+   * pending toasts whatever their priority, so this walks the whole queue. That only happens when
+   * a bounded queue is full, so at most capacity toasts.
+   */
+  private EnqueuedToast oldestToastOfLowestPriority() {
+    EnqueuedToast lowestShowing = null;
+    EnqueuedToast lowestPending = null;
+    for (EnqueuedToast node = head; node != null; node = node.next) {
+      if (node.showing) {
+        if (lowestShowing == null || node.priority < lowestShowing.priority) {
+          lowestShowing = node;
+        }
+      } else if (lowestPending == null || node.priority < lowestPending.priority) {
+        lowestPending = node;
+      }
+    }
+    if (lowestPending == null
+        || (lowestShowing != null && lowestShowing.priority < lowestPending.priority)) {
+      return lowestShowing;
+    }
+    return lowestPending;
+  }
+
+  /**
+   * Moves a toast that an interrupting toast hid behind the pending toasts of a higher priority,
+   * which would otherwise wait behind it. It stays ahead of the pending toasts of its priority,
+   * which were enqueued after it.
+   */
+  private void relinkInterrupted(EnqueuedToast interrupted) {
+    EnqueuedToast next = interrupted.next;
+    while (next != null && next.priority > interrupted.priority) {
+      next = next.next;
+    }
+    if (next == interrupted.next) {
+      return;
+    }
+    EnqueuedToast previous = interrupted.previous;
+    if (previous == null) {
+      head = interrupted.next;
+    } else {
+      previous.next = interrupted.next;
+    }
+    interrupted.next.previous = previous;
+    previous = next == null ? tail : next.previous;
+    previous.next = interrupted;
+    if (next == null) {
+      tail = interrupted;
+    } else {
+      next.previous = interrupted;
+    }
+    interrupted.previous = previous;
+    interrupted.next = next;
+  }
+
+  /**
+   * Links that toast after the last toast that has the same or a higher priority, and after the
+   * showing toasts. Walks back from the tail, so this takes constant time when all toasts have the
+   * same priority.
+   */
+  private void link(EnqueuedToast enqueuedToast) {
+    EnqueuedToast previous = tail;
+    while (previous != null
+        && previous.priority < enqueuedToast.priority
+        && !previous.showing) {
+      previous = previous.previous;
+    }
+    EnqueuedToast next;
+    if (previous == null) {
+      next = head;
+      head = enqueuedToast;
+    } else {
+      next = previous.next;
+      previous.next = enqueuedToast;
+    }
+    if (next == null) {
+      tail = enqueuedToast;
+    } else {
+      next.previous = enqueuedToast;
+    }
+    enqueuedToast.previous = previous;
+    enqueuedToast.next = next;
+    enqueuedToast.queueOrNull = this;
+    size++;
+  }
+
+  /**
+   * Unlinks that toast, forgets its dedupe key and releases its mixture if it was mixed. If it was
+   * showing, the hide timer isn't rescheduled.
+   */
+  private void remove(EnqueuedToast enqueuedToast) {
+    EnqueuedToast previous = enqueuedToast.previous;
+    EnqueuedToast next = enqueuedToast.next;
+    if (previous == null) {
+      head = next;
+    } else {
+      previous.next = next;
+    }
+    if (next == null) {
+      tail = previous;
+    } else {
+      next.previous = previous;
+    }
+    enqueuedToast.previous = null;
+    enqueuedToast.next = null;
+    enqueuedToast.queueOrNull = null;
+    enqueuedToast.toasted.release();
+    size--;
+    if (enqueuedToast.showing) {
+      enqueuedToast.showing = false;
+      showingCount--;
+    }
+    if (enqueuedToast.dedupeKeyOrNull != null) {
+      dedupedToasts.remove(enqueuedToast.dedupeKeyOrNull);
+    }
+    Mixture mixture = enqueuedToast.mixtureOrNull;
+    if (mixture != null) {
+      enqueuedToast.mixtureOrNull = null;
+      mixture.release();
+    }
+  }
+
+  /** Shows the next toasts now, or at the start of the next frame if aligned to frames. */
+  private void showToastsOnFrame() {
+    if (frameCallbackOrNull != null) {
+      scheduleTransition();
+    } else {
+      showToasts();
+    }
+  }
+
+  /**
+   * Hides the due toasts and shows the next ones at the start of the next frame, so that both
+   * land in the same frame, in between the work of other frames.
+   */
+  @TargetApi(JELLY_BEAN) private void scheduleTransition() {
+    if (transitionScheduled) {
+      return;
+    }
+    transitionScheduled = true;
+    Choreographer.getInstance().postFrameCallback(frameCallbackOrNull);
+  }
+
+  /**
+   * Shows the next toasts until as many toasts as allowed are showing, then moves the stacked
+   * toasts into place and schedules the next hide.
+   */
+  private void showToasts() {
+    while (!paused && showingCount < config.maxVisible) {
+      EnqueuedToast nextToast = nextToast();
+      if (nextToast == null) {
+        break;
+      }
+      showToast(nextToast, false);
+    }
+    restack();
+    scheduleHide();
+  }
+
+  /** @param onScreen true if the toast already took over the window of a toast that hid. */
+  private void showToast(EnqueuedToast enqueuedToast, boolean onScreen) {
+    // Mixed before the toast counts as showing, so that a recipe that throws can't block the queue.
+    Mixture mixture = mix(enqueuedToast);
+    enqueuedToast.showing = true;
+    showingCount++;
+    if (!onScreen) {
+      // Stacked toasts that are already showing only move once the new one shows.
+      if (config.maxVisible > 1) {
+        mixture.setStackOffset(stackHeightBefore(enqueuedToast));
+        // Measured before it's added, so that the toasts stacked after it don't overlap it until
+        // its window is laid out.
+        mixture.measuredHeight();
+      }
+      if (config.traceSections) {
+        beginSection("FrenchToast show");
+      }
+      try {
+        mixture.show(viewManagerOrNull, metricsOrNull, config.traceSections);
+      } finally {
+        if (config.traceSections) {
+          endSection();
+        }
+      }
+      if (frameCallbackOrNull != null && !hideSlackRead) {
+        // Displays may refresh at 90 or 120 Hz. Activity queues read it again for each activity.
+        hideSlackMs = halfFrameMs(mixture.refreshRate());
+        hideSlackRead = true;
+      }
+    }
+    long nowUptimeMs = scheduler.uptimeMillis();
+    if (metricsOrNull != null && enqueuedToast.enqueuedUptimeMs != -1) {
+      metricsOrNull.onShown(nowUptimeMs - enqueuedToast.enqueuedUptimeMs);
+      enqueuedToast.enqueuedUptimeMs = -1;
     }
+    enqueuedToast.shownUptimeMs = nowUptimeMs;
+    enqueuedToast.hideUptimeMs = nowUptimeMs + enqueuedToast.remainingMs;
   }
 
-  private void showFirstToast() {
-    if (toastDeque.isEmpty() || paused) {
+  /**
+   * Returns the mixture of that toast, mixing it if it was enqueued as a recipe. If the recipe
+   * throws, e.g. because its layout can't be inflated, the toast is removed and the transitions
+   * run again from the next message, so that the toasts after it still show, then the exception
+   * is rethrown.
+   */
+  private Mixture mix(EnqueuedToast enqueuedToast) {
+    try {
+      return enqueuedToast.mixture();
+    } catch (RuntimeException e) {
+      remove(enqueuedToast);
+      scheduler.schedule(hideTimer, 0);
+      throw e;
+    }
+  }
+
+  /** Offsets each stacked toast by the height of the toasts that showed before it. */
+  private void restack() {
+    if (config.maxVisible == 1) {
+      return;
+    }
+    int offset = 0;
+    for (EnqueuedToast node = head; node != null && node.showing; node = node.next) {
+      Mixture mixture = node.mixture();
+      mixture.setStackOffset(offset);
+      offset += mixture.measuredHeight();
+    }
+  }
+
+  private int stackHeightBefore(EnqueuedToast enqueuedToast) {
+    int height = 0;
+    for (EnqueuedToast node = head; node != enqueuedToast && node.showing; node = node.next) {
+      height += node.mixture().measuredHeight();
+    }
+    return height;
+  }
+
+  /** Schedules the hide timer for the showing toast that should hide first, if any. */
+  private void scheduleHide() {
+    long nextHideUptimeMs = Long.MAX_VALUE;
+    for (EnqueuedToast node = head; node != null && node.showing; node = node.next) {
+      nextHideUptimeMs = Math.min(nextHideUptimeMs, node.hideUptimeMs);
+    }
+    if (nextHideUptimeMs == Long.MAX_VALUE) {
+      scheduler.cancel(hideTimer);
+      return;
+    }
+    long delayMs = Math.max(0, nextHideUptimeMs - hideSlackMs - scheduler.uptimeMillis());
+    scheduler.schedule(hideTimer, delayMs);
+  }
+
+  private EnqueuedToast lastShowingToast() {
+    EnqueuedToast lastShowing = null;
+    for (EnqueuedToast node = head; node != null && node.showing; node = node.next) {
+      lastShowing = node;
+    }
+    return lastShowing;
+  }
+
+  /** Premeasures the toast that shows next the next time the main thread is idle. */
+  private void schedulePremeasure() {
+    if (!config.premeasure || premeasureScheduled || nextToast() == null) {
       return;
     }
-    EnqueuedToast currentToast = toastDeque.getFirst();
-    currentToast.mixture.show();
-    MAIN_HANDLER.postDelayed(hideToast, currentToast.durationMs);
+    premeasureScheduled = true;
+    Looper.myQueue().addIdleHandler(premeasureNextToast);
   }
 
-  private void hideToast() {
-    EnqueuedToast currentToast = toastDeque.removeFirst();
-    currentToast.mixture.hide();
-    showFirstToast();
+  private void premeasureNextToast() {
+    EnqueuedToast nextToast = nextToast();
+    if (nextToast == null) {
+      return;
+    }
+    if (config.traceSections) {
+      beginSection("FrenchToast premeasure");
+    }
+    try {
+      mix(nextToast).premeasure();
+    } finally {
+      if (config.traceSections) {
+        endSection();
+      }
+    }
+  }
+
+  /** Returns the first pending toast that isn't showing, or null. */
+  private EnqueuedToast nextToast() {
+    EnqueuedToast node = head;
+    while (node != null && node.showing) {
+      node = node.next;
+    }
+    return node;
+  }
+
+  /** Hides and removes every showing toast that is due, then shows the next ones. */
+  private void hideToasts() {
+    if (config.traceSections) {
+      beginSection("FrenchToast hide");
+    }
+    try {
+      long dueUptimeMs = scheduler.uptimeMillis() + hideSlackMs;
+      EnqueuedToast node = head;
+      while (node != null && node.showing) {
+        EnqueuedToast next = node.next;
+        if (node.hideUptimeMs <= dueUptimeMs) {
+          hideToast(node);
+        }
+        node = next;
+      }
+      showToasts();
+      schedulePremeasure();
+    } finally {
+      if (config.traceSections) {
+        endSection();
+      }
+    }
+  }
+
+  private void hideToast(EnqueuedToast shownToast) {
+    EnqueuedToast nextToast = null;
+    if (config.reuseTextWindow && !paused) {
+      nextToast = nextToast();
+    }
+    boolean swapped = nextToast != null
+        && mix(nextToast).showInWindowOf(shownToast.mixture());
+    remove(shownToast);
+    if (swapped) {
+      showToast(nextToast, true);
+    }
   }
 }
@@ -2,22 +2,44 @@ package frenchtoast;
 
 import android.content.Context;
 import android.content.res.Configuration;
+import android.content.res.Resources;
 import android.graphics.PixelFormat;
 import android.os.Build;
+import android.support.annotation.LayoutRes;
 import android.support.annotation.MainThread;
+import android.util.DisplayMetrics;
 import android.view.Gravity;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewManager;
 import android.view.WindowManager;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityManager;
+import android.widget.TextView;
 import android.widget.Toast;
 
-import static android.content.Context.WINDOW_SERVICE;
+import static android.view.View.MEASURED_STATE_TOO_SMALL;
+import static android.view.View.MeasureSpec.AT_MOST;
+import static android.view.View.MeasureSpec.makeMeasureSpec;
 import static android.view.accessibility.AccessibilityEvent.TYPE_NOTIFICATION_STATE_CHANGED;
+import static frenchtoast.ToastInternals.accessibilityManager;
 import static frenchtoast.ToastInternals.assertMainThread;
+import static frenchtoast.ToastInternals.beginSection;
+import static frenchtoast.ToastInternals.endSection;
+import static frenchtoast.ToastInternals.windowManager;
 
 public final class Mixture {
 
+  private static final int LAYOUT_DIRECTION_UNSET = -2;
+  private static final int LAYOUT_DIRECTION_UNKNOWN = -1;
+  static final int RES_ID_UNRESOLVED = -1;
+
+  /**
+   * The id of the internal dimension that toast windows are first measured at, 0 if none. Looked
+   * up once, tests reset it to {@link #RES_ID_UNRESOLVED}.
+   */
+  static int prefDialogWidthResId = RES_ID_UNRESOLVED;
+
   /**
    * Creates a {@link Mixture} from a {@link Toast}. Never call {@link Toast#show()} or {@link
    * Toast#cancel()} directly on that passed in {@link Toast}.
@@ -26,15 +48,41 @@ public final class Mixture {
     if (toast.getView() == null) {
       throw new NullPointerException("Toast should have a view already set.");
     }
-    return new Mixture(toast);
+    return new Mixture(toast, null, 0, 0);
+  }
+
+  /**
+   * Creates a {@link Mixture} which view will be given back to the {@link ViewPool} when
+   * {@link #release()} is called, unless the pool was emptied since viewGeneration.
+   */
+  static Mixture dipRecyclable(Toast toast, ViewPool viewPool, @LayoutRes int layoutResId,
+      int viewGeneration) {
+    if (toast.getView() == null) {
+      throw new NullPointerException("Toast should have a view already set.");
+    }
+    return new Mixture(toast, viewPool, layoutResId, viewGeneration);
   }
 
   private final Toast toast;
   private final WindowManager.LayoutParams params;
+  private final ViewPool viewPoolOrNull;
+  private final int layoutResId;
+  /** The generation of the pool the view came from, swapped along with the view. */
+  private int viewGeneration;
+  /** The raw toast gravity and layout direction that {@link #params} were resolved from. */
+  private int paramsToastGravity;
+  private int paramsLayoutDirection = LAYOUT_DIRECTION_UNSET;
+  /** What the view was last added with, null until then if it was added as a window. */
+  private ViewManager shownViewManagerOrNull;
+  /** Moves a stacked toast away from the toasts that showed before it, added to the y offset. */
+  private int stackOffset;
 
-  private Mixture(Toast toast) {
+  private Mixture(Toast toast, ViewPool viewPoolOrNull, int layoutResId, int viewGeneration) {
     assertMainThread();
     this.toast = toast;
+    this.viewPoolOrNull = viewPoolOrNull;
+    this.layoutResId = layoutResId;
+    this.viewGeneration = viewGeneration;
     this.params = buildLayoutParams();
   }
 
@@ -47,42 +95,99 @@ public final class Mixture {
   }
 
   @MainThread public void show() {
+    show(null, null, false);
+  }
+
+  /**
+   * @param viewManagerOrNull adds the view to the screen, or null to add it as a window.
+   * @param metricsOrNull notified of how long adding the window took, when it adds a window.
+   * @param traceSections whether to wrap adding the window in a trace section, when it adds a
+   * window.
+   */
+  @MainThread void show(ViewManager viewManagerOrNull, ToastMetrics metricsOrNull,
+      boolean traceSections) {
     assertMainThread();
     View view = toast.getView();
     if (view == null) {
       throw new IllegalStateException("Can't show a Toast with no View.");
     }
 
-    Context context = toast.getView().getContext();
-
-    WindowManager windowManager = (WindowManager) context.getSystemService(WINDOW_SERVICE);
-
-    // We can resolve the Gravity here by using the Locale for getting
-    // the layout direction
-    Configuration config = view.getContext().getResources().getConfiguration();
-    int gravity = toast.getGravity();
-    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
-      gravity = Gravity.getAbsoluteGravity(gravity, config.getLayoutDirection());
+    Context context = view.getContext();
+    updateLayoutParams(context);
+    if (view.getParent() != null) {
+      shownViewManager(context).removeView(view);
     }
-    params.gravity = gravity;
-    if ((gravity & Gravity.HORIZONTAL_GRAVITY_MASK) == Gravity.FILL_HORIZONTAL) {
-      params.horizontalWeight = 1.0f;
+    if (viewManagerOrNull != null) {
+      // Not necessarily a window, so it is neither traced nor reported as one.
+      shownViewManagerOrNull = viewManagerOrNull;
+      viewManagerOrNull.addView(view, params);
+      trySendAccessibilityEvent(view);
+      return;
     }
-    if ((gravity & Gravity.VERTICAL_GRAVITY_MASK) == Gravity.FILL_VERTICAL) {
-      params.verticalWeight = 1.0f;
+    ViewManager viewManager = windowManager(context);
+    shownViewManagerOrNull = viewManager;
+    if (traceSections) {
+      beginSection("FrenchToast addView");
     }
-    params.x = toast.getXOffset();
-    params.y = toast.getYOffset();
-    params.verticalMargin = toast.getVerticalMargin();
-    params.horizontalMargin = toast.getHorizontalMargin();
-    params.packageName = context.getPackageName();
-    if (view.getParent() != null) {
-      windowManager.removeView(view);
+    try {
+      long startNanos = 0;
+      if (metricsOrNull != null) {
+        startNanos = System.nanoTime();
+      }
+      viewManager.addView(view, params);
+      if (metricsOrNull != null) {
+        metricsOrNull.onWindowAdded(System.nanoTime() - startNanos);
+      }
+    } finally {
+      if (traceSections) {
+        endSection();
+      }
     }
-    windowManager.addView(view, params);
     trySendAccessibilityEvent(view);
   }
 
+  /**
+   * Shows this text toast in the window of {@code showing}, another text toast that is on screen,
+   * instead of removing that window and adding a new one. The text of this toast is copied into
+   * that window and the views of both mixtures are swapped, so that {@code showing} can then be
+   * released as usual and this mixture owns the window.
+   *
+   * @return false if either mixture isn't a recycled text toast, in which case nothing changed.
+   */
+  @MainThread boolean showInWindowOf(Mixture showing) {
+    assertMainThread();
+    if (!isRecyclableText() || !showing.isRecyclableText() || !showing.isShowing()) {
+      return false;
+    }
+    View view = toast.getView();
+    View showingView = showing.toast.getView();
+    if (view == null || view.getParent() != null) {
+      return false;
+    }
+    TextView message = (TextView) view.findViewById(android.R.id.message);
+    TextView showingMessage = (TextView) showingView.findViewById(android.R.id.message);
+    if (message == null || showingMessage == null) {
+      return false;
+    }
+    showingMessage.setText(message.getText());
+    stackOffset = showing.stackOffset;
+    showing.toast.setView(view);
+    toast.setView(showingView);
+    int showingViewGeneration = showing.viewGeneration;
+    showing.viewGeneration = viewGeneration;
+    viewGeneration = showingViewGeneration;
+
+    Context context = showingView.getContext();
+    updateLayoutParams(context);
+    shownViewManagerOrNull = showing.shownViewManager(context);
+    // A window lays itself out again when the text changes, a view in an overlay doesn't.
+    if (!sameLayout(params, showing.params) || showingView.getParent() instanceof ViewGroup) {
+      shownViewManagerOrNull.updateViewLayout(showingView, params);
+    }
+    trySendAccessibilityEvent(showingView);
+    return true;
+  }
+
   @MainThread public void hide() {
     assertMainThread();
     View view = toast.getView();
@@ -90,10 +195,69 @@ public final class Mixture {
       return;
     }
     if (view.getParent() != null) {
-      Context context = toast.getView().getContext();
-      WindowManager windowManager = (WindowManager) context.getSystemService(WINDOW_SERVICE);
-      windowManager.removeView(view);
+      shownViewManager(view.getContext()).removeView(view);
+    }
+  }
+
+  /**
+   * Hides the toast for good. If this mixture was created from a recycled view, the view is given
+   * back to the pool and this mixture can't be shown anymore.
+   */
+  @MainThread void release() {
+    hide();
+    if (viewPoolOrNull == null) {
+      return;
+    }
+    View view = toast.getView();
+    if (view == null) {
+      return;
     }
+    toast.setView(null);
+    viewPoolOrNull.recycle(layoutResId, view, viewGeneration);
+  }
+
+  /**
+   * Measures and lays out the view ahead of {@link #show()}, so that the text layout is already
+   * computed when the window is added. The view is measured with the same width constraints as
+   * the window will. Does nothing if the view is showing or already laid out.
+   */
+  @MainThread void premeasure() {
+    assertMainThread();
+    View view = toast.getView();
+    if (view == null || view.getParent() != null || !view.isLayoutRequested()) {
+      return;
+    }
+    measure(view);
+  }
+
+  /** Moves the toast by that many pixels on top of its y offset, right away if it's showing. */
+  @MainThread void setStackOffset(int stackOffset) {
+    if (stackOffset == this.stackOffset) {
+      return;
+    }
+    this.stackOffset = stackOffset;
+    View view = toast.getView();
+    if (view != null && view.getParent() != null) {
+      Context context = view.getContext();
+      updateLayoutParams(context);
+      shownViewManager(context).updateViewLayout(view, params);
+    }
+  }
+
+  /**
+   * Returns the height of the view. The view is measured first unless it's attached or was
+   * already premeasured, so call this before {@link #show()} to know the height before the first
+   * traversal of the window. Once attached, the view keeps the height it was last measured at.
+   */
+  @MainThread int measuredHeight() {
+    View view = toast.getView();
+    if (view == null) {
+      return 0;
+    }
+    if (view.getParent() == null && view.isLayoutRequested()) {
+      measure(view);
+    }
+    return view.getMeasuredHeight();
   }
 
   @MainThread public boolean isShowing() {
@@ -102,6 +266,122 @@ public final class Mixture {
     return view != null && view.getParent() != null;
   }
 
+  /**
+   * Measures and lays out a view that isn't attached the way ViewRootImpl.measureHierarchy()
+   * measures a window which width wraps its content: at most as wide as a dialog first, then
+   * wider only if the view is too small for that. Otherwise the window would measure the text
+   * again with another width and the layout computed here would be thrown away.
+   */
+  private static void measure(View view) {
+    Resources resources = view.getContext().getResources();
+    DisplayMetrics displayMetrics = resources.getDisplayMetrics();
+    int screenWidth = displayMetrics.widthPixels;
+    int heightMeasureSpec = makeMeasureSpec(displayMetrics.heightPixels, AT_MOST);
+    int baseWidth = prefDialogWidth(resources);
+    boolean goodMeasure = false;
+    if (baseWidth != 0 && screenWidth > baseWidth) {
+      view.measure(makeMeasureSpec(baseWidth, AT_MOST), heightMeasureSpec);
+      goodMeasure = (view.getMeasuredWidthAndState() & MEASURED_STATE_TOO_SMALL) == 0;
+      if (!goodMeasure) {
+        baseWidth = (baseWidth + screenWidth) / 2;
+        view.measure(makeMeasureSpec(baseWidth, AT_MOST), heightMeasureSpec);
+        goodMeasure = (view.getMeasuredWidthAndState() & MEASURED_STATE_TOO_SMALL) == 0;
+      }
+    }
+    if (!goodMeasure) {
+      view.measure(makeMeasureSpec(screenWidth, AT_MOST), heightMeasureSpec);
+    }
+    view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+  }
+
+  private static int prefDialogWidth(Resources resources) {
+    if (prefDialogWidthResId == RES_ID_UNRESOLVED) {
+      prefDialogWidthResId =
+          resources.getIdentifier("config_prefDialogWidth", "dimen", "android");
+    }
+    if (prefDialogWidthResId == 0) {
+      return 0;
+    }
+    return (int) resources.getDimension(prefDialogWidthResId);
+  }
+
+  /**
+   * Returns the refresh rate of the default display of the window manager of the toast context,
+   * in frames per second. That's the display toasts show on.
+   */
+  @MainThread float refreshRate() {
+    Context context = toast.getView().getContext();
+    return windowManager(context).getDefaultDisplay().getRefreshRate();
+  }
+
+  /** Returns what the view was last added with. */
+  private ViewManager shownViewManager(Context context) {
+    if (shownViewManagerOrNull == null) {
+      return windowManager(context);
+    }
+    return shownViewManagerOrNull;
+  }
+
+  private boolean isRecyclableText() {
+    return viewPoolOrNull != null && layoutResId == ViewPool.TEXT_LAYOUT;
+  }
+
+  private static boolean sameLayout(WindowManager.LayoutParams params,
+      WindowManager.LayoutParams other) {
+    return params.gravity == other.gravity
+        && params.x == other.x
+        && params.y == other.y
+        && params.horizontalWeight == other.horizontalWeight
+        && params.verticalWeight == other.verticalWeight
+        && params.horizontalMargin == other.horizontalMargin
+        && params.verticalMargin == other.verticalMargin;
+  }
+
+  /**
+   * Copies the toast gravity, offsets and margins into the window params. Does nothing if neither
+   * the toast nor the layout direction changed since the last call.
+   */
+  private void updateLayoutParams(Context context) {
+    int gravity = toast.getGravity();
+    int layoutDirection = LAYOUT_DIRECTION_UNKNOWN;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+      // We can resolve the Gravity here by using the Locale for getting
+      // the layout direction
+      Configuration config = context.getResources().getConfiguration();
+      layoutDirection = config.getLayoutDirection();
+    }
+    int xOffset = toast.getXOffset();
+    int yOffset = toast.getYOffset() + stackOffset;
+    float verticalMargin = toast.getVerticalMargin();
+    float horizontalMargin = toast.getHorizontalMargin();
+    if (gravity == paramsToastGravity
+        && layoutDirection == paramsLayoutDirection
+        && xOffset == params.x
+        && yOffset == params.y
+        && verticalMargin == params.verticalMargin
+        && horizontalMargin == params.horizontalMargin) {
+      return;
+    }
+    paramsToastGravity = gravity;
+    paramsLayoutDirection = layoutDirection;
+    if (layoutDirection != LAYOUT_DIRECTION_UNKNOWN) {
+      gravity = Gravity.getAbsoluteGravity(gravity, layoutDirection);
+    }
+    params.gravity = gravity;
+    params.horizontalWeight = 0;
+    params.verticalWeight = 0;
+    if ((gravity & Gravity.HORIZONTAL_GRAVITY_MASK) == Gravity.FILL_HORIZONTAL) {
+      params.horizontalWeight = 1.0f;
+    }
+    if ((gravity & Gravity.VERTICAL_GRAVITY_MASK) == Gravity.FILL_VERTICAL) {
+      params.verticalWeight = 1.0f;
+    }
+    params.x = xOffset;
+    params.y = yOffset;
+    params.verticalMargin = verticalMargin;
+    params.horizontalMargin = horizontalMargin;
+  }
+
   private WindowManager.LayoutParams buildLayoutParams() {
     WindowManager.LayoutParams params = new WindowManager.LayoutParams();
     params.height = WindowManager.LayoutParams.WRAP_CONTENT;
@@ -113,13 +393,13 @@ public final class Mixture {
     params.flags = WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON
         | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
         | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE;
+    params.packageName = toast.getView().getContext().getPackageName();
     return params;
   }
 
   private void trySendAccessibilityEvent(View view) {
     Context context = view.getContext();
-    AccessibilityManager accessibilityManager =
-        (AccessibilityManager) context.getSystemService(Context.ACCESSIBILITY_SERVICE);
+    AccessibilityManager accessibilityManager = accessibilityManager(context);
     if (!accessibilityManager.isEnabled()) {
       return;
     }
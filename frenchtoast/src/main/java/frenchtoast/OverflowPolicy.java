@@ -0,0 +1,19 @@
+package frenchtoast;
+
+/**
+ * What a {@link LifecycleToastQueue} does with a new toast when it already holds as many toasts as
+ * its capacity allows. In every case the dropped toast is counted in {@link
+ * LifecycleToastQueue#droppedCount()}.
+ */
+public enum OverflowPolicy {
+  /** The new toast is not enqueued. */
+  DROP_NEWEST,
+  /**
+   * The oldest toast of the lowest priority that isn't showing is removed. If the only toast of
+   * that priority is showing, it is hidden and removed. If every toast is showing, the toast of
+   * the lowest priority that showed first is hidden and removed.
+   */
+  DROP_OLDEST,
+  /** The last toast of the queue is removed and the new toast takes its place. */
+  REPLACE_LAST
+}
@@ -0,0 +1,57 @@
+package frenchtoast;
+
+import android.content.Context;
+import android.os.MessageQueue;
+
+import static frenchtoast.ToastInternals.accessibilityManager;
+import static frenchtoast.ToastInternals.beginSection;
+import static frenchtoast.ToastInternals.endSection;
+import static frenchtoast.ToastInternals.windowManager;
+
+/**
+ * Prepares the first toasts while the main thread is idle: looks up the system services, loads the
+ * toast classes and inflates toast views into the view pool. Does one view each time the main
+ * thread goes idle so that no single idle callback takes long.
+ *
+ * @see QueueConfig.Builder#prewarm(int...)
+ */
+final class Prewarmer implements MessageQueue.IdleHandler {
+
+  /** The text toast view is inflated first, then each layout. */
+  private static final int TEXT_TOAST_INDEX = -1;
+
+  private final Context appContext;
+  private final ViewPool viewPool;
+  private final int[] layoutResIds;
+  private final boolean traceSections;
+  private int nextIndex = TEXT_TOAST_INDEX;
+
+  Prewarmer(Context appContext, ViewPool viewPool, int[] layoutResIds, boolean traceSections) {
+    this.appContext = appContext;
+    this.viewPool = viewPool;
+    this.layoutResIds = layoutResIds;
+    this.traceSections = traceSections;
+  }
+
+  @Override public boolean queueIdle() {
+    if (traceSections) {
+      beginSection("FrenchToast prewarm");
+    }
+    try {
+      // Mixing builds the window params, releasing gives the inflated view to the pool.
+      if (nextIndex == TEXT_TOAST_INDEX) {
+        windowManager(appContext);
+        accessibilityManager(appContext);
+        viewPool.mixText(appContext, "").release();
+      } else {
+        viewPool.mixLayout(appContext, layoutResIds[nextIndex]).release();
+      }
+    } finally {
+      if (traceSections) {
+        endSection();
+      }
+    }
+    nextIndex++;
+    return nextIndex < layoutResIds.length;
+  }
+}
@@ -0,0 +1,227 @@
+package frenchtoast;
+
+import android.os.Build;
+import android.support.annotation.LayoutRes;
+import java.util.concurrent.TimeUnit;
+
+import static frenchtoast.ToastInternals.checkNotNull;
+
+/**
+ * Settings of a {@link LifecycleToastQueue}. The config passed to {@link
+ * FrenchToast#install(android.app.Application, QueueConfig)} is used for every activity queue.
+ */
+public final class QueueConfig {
+
+  public static final QueueConfig DEFAULT = new Builder().build();
+
+  public static final class Builder {
+    int capacity = Integer.MAX_VALUE;
+    OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+    boolean deferInflation;
+    ToastMetrics metrics;
+    boolean traceSections;
+    boolean applicationScoped;
+    boolean resumeWithRemainingTime;
+    long minVisibleMs;
+    boolean reuseTextWindow;
+    boolean premeasure;
+    boolean renderInActivity;
+    int maxVisible = 1;
+    int[] prewarmLayoutResIds;
+    boolean alignToFrames;
+    ToastScheduler scheduler;
+
+    /**
+     * Limits the number of toasts in the queue, including the one showing. Unbounded by default.
+     *
+     * @param overflowPolicy what to do when a toast is enqueued while the queue is full.
+     */
+    public Builder capacity(int capacity, OverflowPolicy overflowPolicy) {
+      if (capacity < 1) {
+        throw new IllegalArgumentException("capacity must be at least 1, not " + capacity);
+      }
+      this.capacity = capacity;
+      this.overflowPolicy = checkNotNull(overflowPolicy, "overflowPolicy");
+      return this;
+    }
+
+    /**
+     * When true, toasts shown with {@link Toaster#showText(CharSequence)}, {@link
+     * Toaster#showText(int)} and {@link Toaster#showLayout(int)} only inflate their view when they
+     * reach the front of the queue, and let go of it as soon as they're hidden for good. Queued
+     * toasts then don't hold on to a view hierarchy while they wait. Unknown resource ids still
+     * throw from the toaster call. A layout that fails to inflate throws when it reaches the
+     * front of the queue, and is removed from the queue. False by default.
+     */
+    public Builder deferInflation(boolean deferInflation) {
+      this.deferInflation = deferInflation;
+      return this;
+    }
+
+    /** Reports queue events to metrics. None by default. */
+    public Builder metrics(ToastMetrics metrics) {
+      this.metrics = checkNotNull(metrics, "metrics");
+      return this;
+    }
+
+    /**
+     * When true, showing and hiding toasts, and adding toast windows, are wrapped in {@link
+     * android.os.Trace} sections. Ignored before API 18. False by default.
+     */
+    public Builder traceSections(boolean traceSections) {
+      this.traceSections = traceSections;
+      return this;
+    }
+
+    /**
+     * When true, {@link FrenchToast} keeps a single queue for the whole application instead of one
+     * queue per activity. Toasts then show in whichever activity is resumed, and pending toasts
+     * survive the activity they were shown from. {@link SmartToaster#clear()} clears that single
+     * queue. Only used by {@link FrenchToast#install(android.app.Application, QueueConfig)}. False
+     * by default.
+     */
+    public Builder applicationScoped(boolean applicationScoped) {
+      this.applicationScoped = applicationScoped;
+      return this;
+    }
+
+    /**
+     * By default, a toast hidden by a pause is shown for its whole duration again when the queue
+     * resumes. Call this to have it shown only for the rest of its duration instead, but for at
+     * least minVisible so that the user has time to notice it.
+     */
+    public Builder resumeWithRemainingTime(long minVisible, TimeUnit timeUnit) {
+      if (minVisible < 0) {
+        throw new IllegalArgumentException("minVisible must not be negative, not " + minVisible);
+      }
+      resumeWithRemainingTime = true;
+      minVisibleMs = timeUnit.toMillis(minVisible);
+      return this;
+    }
+
+    /**
+     * When true, a text toast that follows another text toast in the queue is shown in the window
+     * of that toast: the text and position are updated in place instead of removing a window and
+     * adding a new one. Only applies to toasts shown with {@link Toaster#showText(CharSequence)}
+     * and {@link Toaster#showText(int)}, and the swap isn't animated. False by default.
+     */
+    public Builder reuseTextWindow(boolean reuseTextWindow) {
+      this.reuseTextWindow = reuseTextWindow;
+      return this;
+    }
+
+    /**
+     * When true, the toast that shows next is measured and laid out while it waits in the queue,
+     * the next time the main thread is idle, so that showing it only adds a window. This moves the
+     * text layout of long or styled text out of the frame in which the toast appears. With {@link
+     * #deferInflation(boolean)}, that toast is also inflated then. False by default.
+     */
+    public Builder premeasure(boolean premeasure) {
+      this.premeasure = premeasure;
+      return this;
+    }
+
+    /**
+     * Lets up to maxVisible toasts show at once, each for its own duration, so that bursts of
+     * toasts go by faster. The toasts are stacked: each one is moved away from the toasts that
+     * showed before it by their height, in the direction of its y offset. 1 by default.
+     */
+    public Builder maxVisible(int maxVisible) {
+      if (maxVisible < 1) {
+        throw new IllegalArgumentException("maxVisible must be at least 1, not " + maxVisible);
+      }
+      this.maxVisible = maxVisible;
+      return this;
+    }
+
+    /**
+     * When true, toasts are drawn in the overlay of the resumed activity instead of in their own
+     * window, so that showing and hiding a toast doesn't add or remove a window. Toasts then
+     * don't animate, are hidden when their activity pauses even for a configuration change, and
+     * are drawn under any window above the activity, e.g. a dialog. Ignored before API 18, where
+     * toasts are always shown in a window. Only used by {@link
+     * FrenchToast#install(android.app.Application, QueueConfig)}. False by default.
+     */
+    public Builder renderInActivity(boolean renderInActivity) {
+      this.renderInActivity = renderInActivity;
+      return this;
+    }
+
+    /**
+     * When true, toasts show and hide at the start of a frame, from a {@link
+     * android.view.Choreographer} callback, instead of in the middle of other work. A toast that
+     * hides and the toast that shows next do so in the same frame. Toasts hide in the frame
+     * closest to their deadline, so durations stay accurate within half a frame at the refresh
+     * rate of the default display, which each queue reads when its first toast shows. Ignored
+     * before API 16. False by default.
+     */
+    public Builder alignToFrames(boolean alignToFrames) {
+      this.alignToFrames = alignToFrames;
+      return this;
+    }
+
+    /**
+     * Prepares toasts while the main thread is idle right after install, so that the first toast
+     * doesn't pay for class loading, system service lookups and inflation: a text toast view and
+     * a view for each of these layouts are inflated into a pool of views that toasts reuse. Only
+     * used by {@link FrenchToast#install(android.app.Application, QueueConfig)}. Not done by
+     * default.
+     */
+    public Builder prewarm(@LayoutRes int... layoutResIds) {
+      prewarmLayoutResIds = checkNotNull(layoutResIds, "layoutResIds").clone();
+      return this;
+    }
+
+    /**
+     * Runs the timers of the queues on that scheduler, e.g. to control time in tests. By default,
+     * {@link FrenchToast} creates one scheduler for all its queues, and a {@link
+     * LifecycleToastQueue} created directly gets its own scheduler.
+     */
+    public Builder scheduler(ToastScheduler scheduler) {
+      this.scheduler = checkNotNull(scheduler, "scheduler");
+      return this;
+    }
+
+    public QueueConfig build() {
+      return new QueueConfig(this);
+    }
+  }
+
+  final int capacity;
+  final OverflowPolicy overflowPolicy;
+  final boolean deferInflation;
+  final ToastMetrics metricsOrNull;
+  final boolean traceSections;
+  final boolean applicationScoped;
+  final boolean resumeWithRemainingTime;
+  final long minVisibleMs;
+  final boolean reuseTextWindow;
+  final boolean premeasure;
+  final boolean renderInActivity;
+  final int maxVisible;
+  /** Null when not prewarming. */
+  final int[] prewarmLayoutResIdsOrNull;
+  final boolean alignToFrames;
+  final ToastScheduler schedulerOrNull;
+
+  QueueConfig(Builder builder) {
+    capacity = builder.capacity;
+    overflowPolicy = builder.overflowPolicy;
+    deferInflation = builder.deferInflation;
+    metricsOrNull = builder.metrics;
+    applicationScoped = builder.applicationScoped;
+    resumeWithRemainingTime = builder.resumeWithRemainingTime;
+    minVisibleMs = builder.minVisibleMs;
+    reuseTextWindow = builder.reuseTextWindow;
+    premeasure = builder.premeasure;
+    renderInActivity =
+        builder.renderInActivity && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    maxVisible = builder.maxVisible;
+    prewarmLayoutResIdsOrNull = builder.prewarmLayoutResIds;
+    alignToFrames =
+        builder.alignToFrames && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    schedulerOrNull = builder.scheduler;
+    traceSections =
+        builder.traceSections && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+  }
+}
@@ -0,0 +1,11 @@
+package frenchtoast;
+
+import android.support.annotation.MainThread;
+
+/**
+ * Knows how to make a {@link Mixture}. A queue can hold a recipe instead of a mixture, so that the
+ * toast view is only inflated when the toast is about to show.
+ */
+interface Recipe {
+  @MainThread Mixture mix();
+}
@@ -2,6 +2,10 @@ package frenchtoast;
 
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Toasters are immutable: the methods that configure toasts return a configured toaster and leave
+ * this one unchanged.
+ */
 public interface SmartToaster extends Toaster {
 
   Toaster shortLength();
@@ -11,4 +15,42 @@ public interface SmartToaster extends Toaster {
   Toaster length(long duration, TimeUnit timeUnit);
 
   void clear();
+
+  /**
+   * Collapses toasts that have an equal key: if a toast shown with an equal key is still pending
+   * or showing for this activity, no new toast is created and its {@link Toasted} is returned
+   * instead.
+   */
+  SmartToaster dedupe(Object key);
+
+  /**
+   * Same as {@link #dedupe(Object)}, and if the existing toast is currently showing then it stays
+   * on screen for its whole duration again, starting now.
+   */
+  SmartToaster dedupeAndRestart(Object key);
+
+  /**
+   * Toasts with a higher priority are shown before toasts with a lower priority. Toasts with the
+   * same priority are shown in order. Defaults to {@link LifecycleToastQueue#DEFAULT_PRIORITY}.
+   */
+  SmartToaster priority(int priority);
+
+  /**
+   * If the toast showing has a lower priority than the next toast, that next toast is shown
+   * immediately, unless toasts of its priority were already pending: those show first. The
+   * interrupted toast is shown again after the toasts of a higher priority, for its whole duration
+   * or, with {@link QueueConfig.Builder#resumeWithRemainingTime(long,
+   * java.util.concurrent.TimeUnit)}, for the rest of it.
+   */
+  SmartToaster interrupting();
+
+  /**
+   * Limits how often toasts of a category are enqueued, across all activities. Toasts count from
+   * when they're enqueued, not from when they show. A throttled toast is dropped before it's ever
+   * created or enqueued, and an already canceled {@link Toasted} is returned for it. Throttled
+   * toasts are counted in {@link FrenchToast#throttledCount(Object)}. Categories are compared
+   * with {@link Object#equals(Object)} and their state is kept for the lifetime of the app, so
+   * there should be a small, fixed set of categories.
+   */
+  SmartToaster throttle(Object category, ThrottlePolicy policy);
 }
@@ -0,0 +1,54 @@
+package frenchtoast;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often toasts of a category are enqueued, see {@link SmartToaster#throttle(Object,
+ * ThrottlePolicy)}. A throttled toast is never enqueued nor inflated. Toasts count from when
+ * they're enqueued, not from when they show, so toasts still waiting in the queue count too.
+ */
+public final class ThrottlePolicy {
+
+  public static final class Builder {
+    int maxToasts;
+    long windowMs;
+    long minGapMs;
+
+    /** At most maxToasts toasts of the category are enqueued within any window of that length. */
+    public Builder maxToasts(int maxToasts, long window, TimeUnit timeUnit) {
+      if (maxToasts < 1) {
+        throw new IllegalArgumentException("maxToasts must be at least 1, not " + maxToasts);
+      }
+      if (window < 0) {
+        throw new IllegalArgumentException("window must not be negative, not " + window);
+      }
+      this.maxToasts = maxToasts;
+      windowMs = timeUnit.toMillis(window);
+      return this;
+    }
+
+    /** Toasts of the category are enqueued at least minGap apart. */
+    public Builder minGap(long minGap, TimeUnit timeUnit) {
+      if (minGap < 0) {
+        throw new IllegalArgumentException("minGap must not be negative, not " + minGap);
+      }
+      minGapMs = timeUnit.toMillis(minGap);
+      return this;
+    }
+
+    public ThrottlePolicy build() {
+      return new ThrottlePolicy(this);
+    }
+  }
+
+  /** 0 when the number of toasts per window isn't limited. */
+  final int maxToasts;
+  final long windowMs;
+  final long minGapMs;
+
+  ThrottlePolicy(Builder builder) {
+    maxToasts = builder.maxToasts;
+    windowMs = builder.windowMs;
+    minGapMs = builder.minGapMs;
+  }
+}
@@ -1,14 +1,70 @@
 package frenchtoast;
 
+import android.annotation.TargetApi;
+import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Trace;
+import android.view.WindowManager;
+import android.view.accessibility.AccessibilityManager;
+
+import static android.content.Context.ACCESSIBILITY_SERVICE;
+import static android.content.Context.WINDOW_SERVICE;
+import static android.os.Build.VERSION_CODES.JELLY_BEAN_MR2;
 
 final class ToastInternals {
 
   static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
 
+  private static WindowManager windowManager;
+  private static AccessibilityManager accessibilityManager;
+
+  /**
+   * Returns the application {@link WindowManager}, which is what {@link android.widget.Toast} uses
+   * to add its window. Looked up once per process. Must be called from the main thread.
+   */
+  static WindowManager windowManager(Context context) {
+    if (windowManager == null) {
+      windowManager = (WindowManager) applicationContext(context).getSystemService(WINDOW_SERVICE);
+    }
+    return windowManager;
+  }
+
+  /**
+   * Returns the application {@link AccessibilityManager}. Looked up once per process. Must be
+   * called from the main thread.
+   */
+  static AccessibilityManager accessibilityManager(Context context) {
+    if (accessibilityManager == null) {
+      Context applicationContext = applicationContext(context);
+      accessibilityManager =
+          (AccessibilityManager) applicationContext.getSystemService(ACCESSIBILITY_SERVICE);
+    }
+    return accessibilityManager;
+  }
+
+  private static Context applicationContext(Context context) {
+    Context applicationContext = context.getApplicationContext();
+    if (applicationContext == null) {
+      return context;
+    }
+    return applicationContext;
+  }
+
+  @TargetApi(JELLY_BEAN_MR2) static void beginSection(String sectionName) {
+    Trace.beginSection(sectionName);
+  }
+
+  @TargetApi(JELLY_BEAN_MR2) static void endSection() {
+    Trace.endSection();
+  }
+
+  static boolean isMainThread() {
+    return Thread.currentThread() == Looper.getMainLooper().getThread();
+  }
+
   static void assertMainThread() {
-    if (Thread.currentThread() != Looper.getMainLooper().getThread()) {
+    if (!isMainThread()) {
       throw new UnsupportedOperationException(
           "Should be called from main thread, not " + Thread.currentThread());
     }
@@ -0,0 +1,62 @@
+package frenchtoast;
+
+import android.support.annotation.MainThread;
+
+/**
+ * Receives events from toast queues, e.g. to report them as metrics. Set it with {@link
+ * QueueConfig.Builder#metrics(ToastMetrics)}. All methods are called on the main thread and do
+ * nothing by default. They are called while the queue is changing, so they should be fast and
+ * must not call back into the queue.
+ */
+public abstract class ToastMetrics {
+
+  /**
+   * A toast was enqueued.
+   *
+   * @param queueSize the number of toasts in the queue, including that one.
+   */
+  @MainThread public void onEnqueued(int queueSize) {
+  }
+
+  /**
+   * A toast showed for the first time.
+   *
+   * @param waitedMs the time since that toast was enqueued.
+   */
+  @MainThread public void onShown(long waitedMs) {
+  }
+
+  /**
+   * A showing toast was hidden because its queue was paused or it was interrupted. It will be
+   * shown again for its whole duration. Not called when the queue resumes toasts with their
+   * remaining time.
+   */
+  @MainThread public void onDurationReset() {
+  }
+
+  /** A pending or showing toast was canceled. */
+  @MainThread public void onCanceled() {
+  }
+
+  /** A toast was dropped because its queue was full. */
+  @MainThread public void onDropped() {
+  }
+
+  /**
+   * A toast was throttled before it was enqueued.
+   *
+   * @param category the throttle category of that toast.
+   * @see SmartToaster#throttle(Object, ThrottlePolicy)
+   */
+  @MainThread public void onThrottled(Object category) {
+  }
+
+  /**
+   * A toast window was added. Not called for toasts drawn in the activity, see {@link
+   * QueueConfig.Builder#renderInActivity(boolean)}.
+   *
+   * @param durationNanos how long the call to {@link android.view.WindowManager#addView} took.
+   */
+  @MainThread public void onWindowAdded(long durationNanos) {
+  }
+}
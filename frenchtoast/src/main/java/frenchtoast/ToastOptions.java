@@ -0,0 +1,82 @@
+package frenchtoast;
+
+/**
+ * How a toaster shows its toasts. Immutable, so that toasters and the submissions they hand over
+ * to the main thread can share it. Each {@code with} method returns a copy, or this when nothing
+ * changes.
+ */
+final class ToastOptions {
+
+  /*
+   * Constants based on https://github.com/android/platform_frameworks_base/blob/master/services/
+   * core/java/com/android/server/notification/NotificationManagerService.java#L140
+   */
+
+  static final int ANDROID_LONG_DELAY_MS = 3_500;
+  static final int ANDROID_SHORT_DELAY_MS = 2_000;
+
+  static final ToastOptions LONG = new ToastOptions(ANDROID_LONG_DELAY_MS, null, false,
+      LifecycleToastQueue.DEFAULT_PRIORITY, false, null, null);
+  static final ToastOptions SHORT = LONG.withDuration(ANDROID_SHORT_DELAY_MS);
+
+  final long durationMs;
+  final Object dedupeKey;
+  final boolean restartDeduped;
+  final int priority;
+  final boolean interrupt;
+  final Object throttleCategory;
+  final ThrottlePolicy throttlePolicy;
+
+  private ToastOptions(long durationMs, Object dedupeKey, boolean restartDeduped, int priority,
+      boolean interrupt, Object throttleCategory, ThrottlePolicy throttlePolicy) {
+    this.durationMs = durationMs;
+    this.dedupeKey = dedupeKey;
+    this.restartDeduped = restartDeduped;
+    this.priority = priority;
+    this.interrupt = interrupt;
+    this.throttleCategory = throttleCategory;
+    this.throttlePolicy = throttlePolicy;
+  }
+
+  /** True if only the duration may differ from the default options. */
+  boolean hasDefaultsBesidesDuration() {
+    return dedupeKey == null
+        && priority == LifecycleToastQueue.DEFAULT_PRIORITY
+        && !interrupt
+        && throttleCategory == null;
+  }
+
+  ToastOptions withDuration(long durationMs) {
+    if (durationMs == this.durationMs) {
+      return this;
+    }
+    return new ToastOptions(durationMs, dedupeKey, restartDeduped, priority, interrupt,
+        throttleCategory, throttlePolicy);
+  }
+
+  ToastOptions withDedupe(Object dedupeKey, boolean restartDeduped) {
+    return new ToastOptions(durationMs, dedupeKey, restartDeduped, priority, interrupt,
+        throttleCategory, throttlePolicy);
+  }
+
+  ToastOptions withPriority(int priority) {
+    if (priority == this.priority) {
+      return this;
+    }
+    return new ToastOptions(durationMs, dedupeKey, restartDeduped, priority, interrupt,
+        throttleCategory, throttlePolicy);
+  }
+
+  ToastOptions withInterrupt() {
+    if (interrupt) {
+      return this;
+    }
+    return new ToastOptions(durationMs, dedupeKey, restartDeduped, priority, true,
+        throttleCategory, throttlePolicy);
+  }
+
+  ToastOptions withThrottle(Object throttleCategory, ThrottlePolicy throttlePolicy) {
+    return new ToastOptions(durationMs, dedupeKey, restartDeduped, priority, interrupt,
+        throttleCategory, throttlePolicy);
+  }
+}
@@ -0,0 +1,138 @@
+package frenchtoast;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.support.annotation.MainThread;
+import java.util.ArrayList;
+import java.util.List;
+
+import static frenchtoast.ToastInternals.checkNotNull;
+
+/**
+ * Runs the timers of toast queues. All the timers of a scheduler are driven by a single message
+ * that is sent to its looper for the nearest deadline, so that queues don't each keep their own
+ * delayed callbacks in the message queue. {@link FrenchToast} shares one scheduler between all the
+ * queues it creates. Set it with {@link QueueConfig.Builder#scheduler(ToastScheduler)}, e.g. to
+ * control time in tests.
+ */
+public final class ToastScheduler {
+
+  /** The time source of a {@link ToastScheduler}. */
+  public interface Clock {
+    /** Milliseconds since some fixed point in time, which never go backwards. */
+    long uptimeMillis();
+  }
+
+  /** A timer that is either scheduled once or not scheduled. */
+  static final class Timer {
+    final Runnable action;
+    /** When the action should run, or {@link #NOT_SCHEDULED}. */
+    long deadlineUptimeMs = NOT_SCHEDULED;
+
+    Timer(Runnable action) {
+      this.action = action;
+    }
+  }
+
+  static final Clock SYSTEM_CLOCK = new Clock() {
+    @Override public long uptimeMillis() {
+      return SystemClock.uptimeMillis();
+    }
+  };
+
+  private static final long NOT_SCHEDULED = -1;
+  private static final int RUN_DUE_TIMERS = 1;
+
+  private final Clock clock;
+  private final Handler handler;
+  private final List<Timer> scheduledTimers = new ArrayList<>();
+  /** When the pending message is due, or {@link #NOT_SCHEDULED} if there is none. */
+  private long messageUptimeMs = NOT_SCHEDULED;
+
+  /** Runs timers on the main thread, based on {@link SystemClock#uptimeMillis()}. */
+  public ToastScheduler() {
+    this(SYSTEM_CLOCK, Looper.getMainLooper());
+  }
+
+  /**
+   * @param looper the looper that runs the timers. Toast queues must only be used from the main
+   * thread, so this should only be another looper when that looper runs on the main thread, e.g. in
+   * tests.
+   */
+  public ToastScheduler(Clock clock, Looper looper) {
+    this.clock = checkNotNull(clock, "clock");
+    handler = new Handler(checkNotNull(looper, "looper"), new Handler.Callback() {
+      @Override public boolean handleMessage(Message message) {
+        runDueTimers();
+        return true;
+      }
+    });
+  }
+
+  long uptimeMillis() {
+    return clock.uptimeMillis();
+  }
+
+  /** Runs the action of the timer after delayMs, instead of when it was previously scheduled. */
+  @MainThread void schedule(Timer timer, long delayMs) {
+    long deadlineUptimeMs = clock.uptimeMillis() + delayMs;
+    if (timer.deadlineUptimeMs == NOT_SCHEDULED) {
+      scheduledTimers.add(timer);
+    }
+    timer.deadlineUptimeMs = deadlineUptimeMs;
+    if (messageUptimeMs == NOT_SCHEDULED || deadlineUptimeMs < messageUptimeMs) {
+      sendMessage(deadlineUptimeMs);
+    }
+  }
+
+  /**
+   * Does nothing if the timer isn't scheduled. The pending message is left alone: when it fires
+   * early it's sent again for the nearest deadline.
+   */
+  @MainThread void cancel(Timer timer) {
+    if (timer.deadlineUptimeMs == NOT_SCHEDULED) {
+      return;
+    }
+    timer.deadlineUptimeMs = NOT_SCHEDULED;
+    scheduledTimers.remove(timer);
+  }
+
+  private void runDueTimers() {
+    messageUptimeMs = NOT_SCHEDULED;
+    long nowUptimeMs = clock.uptimeMillis();
+    while (true) {
+      Timer nearestTimer = nearestTimer();
+      if (nearestTimer == null) {
+        return;
+      }
+      if (nearestTimer.deadlineUptimeMs > nowUptimeMs) {
+        sendMessage(nearestTimer.deadlineUptimeMs);
+        return;
+      }
+      // The action may schedule timers, which is why the nearest timer is looked up every time.
+      cancel(nearestTimer);
+      nearestTimer.action.run();
+    }
+  }
+
+  /** There are only a few timers, one per queue, so a linear scan is fine. */
+  private Timer nearestTimer() {
+    Timer nearestTimer = null;
+    for (int i = 0, size = scheduledTimers.size(); i < size; i++) {
+      Timer timer = scheduledTimers.get(i);
+      if (nearestTimer == null || timer.deadlineUptimeMs < nearestTimer.deadlineUptimeMs) {
+        nearestTimer = timer;
+      }
+    }
+    return nearestTimer;
+  }
+
+  private void sendMessage(long deadlineUptimeMs) {
+    handler.removeMessages(RUN_DUE_TIMERS);
+    messageUptimeMs = deadlineUptimeMs;
+    long delayMs = Math.max(0, deadlineUptimeMs - clock.uptimeMillis());
+    handler.sendEmptyMessageDelayed(RUN_DUE_TIMERS, delayMs);
+  }
+}
@@ -1,16 +1,128 @@
 package frenchtoast;
 
+import android.support.annotation.AnyThread;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static frenchtoast.ToastInternals.MAIN_HANDLER;
+import static frenchtoast.ToastInternals.isMainThread;
+
+/**
+ * A handle on a toast that was shown. It lets go of the toast once the toast left its queue, and
+ * only references it weakly until then, so keeping a handle around doesn't keep the toast view nor
+ * its queue in memory, even when the queue is abandoned with its activity.
+ */
 public final class Toasted {
 
-  private final ToastQueue toastQueue;
-  private final Mixture mixture;
+  /** Returned instead of a toast that was never enqueued, e.g. because it was throttled. */
+  static final Toasted NOT_ENQUEUED = new Toasted(true);
+
+  /**
+   * Null once the toast left its queue, and for handles of toasts submitted from other threads.
+   * The queue holds on to its toasts for as long as it's used.
+   */
+  private volatile WeakReference<LifecycleToastQueue.EnqueuedToast> enqueuedToastRefOrNull;
+  /**
+   * Null until a toast submitted from another thread is enqueued on the main thread, then the
+   * handle of that enqueued toast.
+   */
+  private volatile Toasted attachedOrNull;
+  /**
+   * True once canceled, and once the toast left its queue so that canceling does nothing. Set
+   * atomically so that only one of concurrent cancels returns true.
+   */
+  private final AtomicBoolean canceled = new AtomicBoolean();
+
+  Toasted(LifecycleToastQueue.EnqueuedToast enqueuedToast) {
+    enqueuedToastRefOrNull = new WeakReference<>(enqueuedToast);
+  }
+
+  /** Creates a handle for a toast that will be enqueued later, on the main thread. */
+  Toasted() {
+  }
+
+  private Toasted(boolean canceled) {
+    this.canceled.set(canceled);
+  }
+
+  /**
+   * Hides the toast if it's showing, or removes it from its queue if it's pending. Takes constant
+   * time. When called from another thread than the main thread, the toast is canceled
+   * asynchronously.
+   *
+   * @return false if the toast was already done showing, canceled or cleared. Only the first
+   * cancel of a toast returns true. From another thread, true only means that the cancel was
+   * requested: the toast may still finish showing before the cancel runs on the main thread.
+   */
+  @AnyThread public boolean cancel() {
+    if (isMainThread()) {
+      Toasted attached = attachedOrNull;
+      if (attached != null) {
+        return attached.cancel();
+      }
+      if (!markCanceled()) {
+        return false;
+      }
+      // Not enqueued yet: the toast is dropped when its submission runs.
+      return enqueuedToastRefOrNull == null || cancelEnqueued();
+    }
+    boolean wasPending = markCanceled();
+    // attach() publishes attachedOrNull then reads canceled, so at least one of us sees the other.
+    Toasted attached = attachedOrNull;
+    if (attached != null) {
+      return attached.cancel();
+    }
+    if (wasPending && enqueuedToastOrNull() != null) {
+      MAIN_HANDLER.post(new Runnable() {
+        @Override public void run() {
+          cancelEnqueued();
+        }
+      });
+    }
+    return wasPending;
+  }
+
+  /** Returns true if this handle was canceled before being attached to an enqueued toast. */
+  boolean isCanceled() {
+    return canceled.get();
+  }
+
+  /** Called on the main thread when a toast submitted from another thread gets enqueued. */
+  void attach(Toasted enqueued) {
+    attachedOrNull = enqueued;
+    if (canceled.get()) {
+      enqueued.cancel();
+    }
+  }
+
+  /** Called on the main thread when the toast left its queue, for good. */
+  void release() {
+    canceled.set(true);
+    enqueuedToastRefOrNull = null;
+  }
+
+  /** Returns true if the toast was neither canceled nor done showing yet. */
+  private boolean markCanceled() {
+    return !canceled.getAndSet(true);
+  }
 
-  Toasted(ToastQueue toastQueue, Mixture mixture) {
-    this.toastQueue = toastQueue;
-    this.mixture = mixture;
+  private LifecycleToastQueue.EnqueuedToast enqueuedToastOrNull() {
+    WeakReference<LifecycleToastQueue.EnqueuedToast> enqueuedToastRef = enqueuedToastRefOrNull;
+    if (enqueuedToastRef == null) {
+      return null;
+    }
+    return enqueuedToastRef.get();
   }
 
-  public boolean cancel() {
-    return toastQueue.cancel(mixture);
+  private boolean cancelEnqueued() {
+    LifecycleToastQueue.EnqueuedToast enqueuedToast = enqueuedToastOrNull();
+    if (enqueuedToast == null) {
+      return false;
+    }
+    LifecycleToastQueue queue = enqueuedToast.queueOrNull;
+    if (queue == null) {
+      return false;
+    }
+    return queue.cancel(enqueuedToast);
   }
 }
@@ -31,7 +31,9 @@ public interface Toaster {
   Toasted showLayout(@LayoutRes int layoutResId);
 
   /**
-   * Shows the provided Toast, dipped as a FrenchToast.
+   * Shows the provided Toast, dipped as a FrenchToast. The toast is kept until it's done showing,
+   * along with the context it was made with: make it with the application context, otherwise a
+   * pending toast keeps its activity in memory until the activity is destroyed.
    *
    * @param toast A Toast to dip that must not have been shown previously.
    */
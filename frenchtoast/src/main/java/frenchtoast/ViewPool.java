@@ -0,0 +1,120 @@
+package frenchtoast;
+
+import android.annotation.SuppressLint;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.support.annotation.LayoutRes;
+import android.support.annotation.MainThread;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.Toast;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static android.widget.Toast.LENGTH_SHORT;
+import static frenchtoast.ToastInternals.assertMainThread;
+
+/**
+ * Keeps detached toast views so that they can be shown again instead of being inflated again.
+ * Views are keyed by the layout resource they were inflated from, and at most {@link
+ * #MAX_VIEWS_PER_LAYOUT} views are kept for each layout. The pool is emptied when the
+ * configuration changes, because views inflated for the previous configuration may be using stale
+ * resources. Views that are showing or waiting to show at that time belong to an older generation
+ * of the pool, and are dropped instead of being recycled.
+ */
+final class ViewPool implements ComponentCallbacks2 {
+
+  /**
+   * Key for views inflated by {@link android.widget.Toast#makeText}. No layout resource has an id
+   * of 0.
+   */
+  static final int TEXT_LAYOUT = 0;
+
+  static final int MAX_VIEWS_PER_LAYOUT = 3;
+
+  private static final int IGNORED = LENGTH_SHORT;
+
+  private final SparseArray<Deque<View>> viewsByLayout = new SparseArray<>();
+  /** Incremented every time the pool is emptied. */
+  private int generation;
+
+  /** Creates a text toast mixture, which view comes from this pool if possible. */
+  @SuppressLint("ShowToast")
+  @MainThread Mixture mixText(Context context, CharSequence text) {
+    View recycledView = obtain(TEXT_LAYOUT);
+    Toast toast;
+    if (recycledView == null) {
+      toast = Toast.makeText(context, text, IGNORED);
+    } else {
+      toast = new Toast(context);
+      toast.setView(recycledView);
+      toast.setText(text);
+    }
+    return Mixture.dipRecyclable(toast, this, TEXT_LAYOUT, generation);
+  }
+
+  /** Creates a layout toast mixture, which view comes from this pool if possible. */
+  @MainThread Mixture mixLayout(Context context, @LayoutRes int layoutResId) {
+    View view = obtain(layoutResId);
+    if (view == null) {
+      view = LayoutInflater.from(context).inflate(layoutResId, null);
+    }
+    Toast toast = new Toast(context);
+    toast.setView(view);
+    return Mixture.dipRecyclable(toast, this, layoutResId, generation);
+  }
+
+  /** Returns a detached view previously inflated from that layout, or null. */
+  @MainThread View obtain(@LayoutRes int layoutResId) {
+    assertMainThread();
+    Deque<View> views = viewsByLayout.get(layoutResId);
+    if (views == null) {
+      return null;
+    }
+    return views.pollFirst();
+  }
+
+  /**
+   * @param viewGeneration the generation of the pool when the view was obtained or inflated. The
+   * view is dropped if the pool was emptied since.
+   */
+  @MainThread void recycle(@LayoutRes int layoutResId, View view, int viewGeneration) {
+    assertMainThread();
+    if (view.getParent() != null) {
+      throw new IllegalStateException("Can't recycle a View that is still attached.");
+    }
+    if (viewGeneration != generation) {
+      return;
+    }
+    Deque<View> views = viewsByLayout.get(layoutResId);
+    if (views == null) {
+      views = new ArrayDeque<>(MAX_VIEWS_PER_LAYOUT);
+      viewsByLayout.put(layoutResId, views);
+    }
+    if (views.size() < MAX_VIEWS_PER_LAYOUT) {
+      views.addFirst(view);
+    }
+  }
+
+  @MainThread void clear() {
+    assertMainThread();
+    viewsByLayout.clear();
+    generation++;
+  }
+
+  @Override public void onConfigurationChanged(Configuration newConfig) {
+    clear();
+  }
+
+  @Override public void onLowMemory() {
+    clear();
+  }
+
+  @Override public void onTrimMemory(int level) {
+    if (level >= TRIM_MEMORY_UI_HIDDEN) {
+      clear();
+    }
+  }
+}
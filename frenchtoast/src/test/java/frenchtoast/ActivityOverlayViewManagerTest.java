@@ -0,0 +1,91 @@
+package frenchtoast;
+
+import android.app.Activity;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+import android.widget.TextView;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Checks that toast views are drawn in the activity overlay, where their window would be. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class ActivityOverlayViewManagerTest {
+
+  private final ActivityOverlayViewManager viewManager = new ActivityOverlayViewManager();
+  private Activity activity;
+  private View decorView;
+  private TextView toastView;
+  private WindowManager.LayoutParams params;
+
+  @Before public void setUp() {
+    activity = Robolectric.buildActivity(Activity.class).create().get();
+    decorView = activity.getWindow().getDecorView();
+    toastView = new TextView(activity.getApplicationContext());
+    toastView.setText("Toast");
+    params = new WindowManager.LayoutParams();
+    params.gravity = Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL;
+    params.y = 50;
+  }
+
+  @Test public void viewIsAddedToOverlayOfResumedActivity() {
+    viewManager.onActivityResumed(activity);
+
+    viewManager.addView(toastView, params);
+
+    assertTrue(toastView.getParent() instanceof ViewGroup);
+    viewManager.removeView(toastView);
+    assertNull(toastView.getParent());
+  }
+
+  @Test public void viewIsPositionedLikeToastWindow() {
+    decorView.layout(0, 0, 480, 800);
+    viewManager.onActivityResumed(activity);
+
+    viewManager.addView(toastView, params);
+
+    assertEquals(800 - 50, toastView.getBottom());
+    assertEquals(toastView.getMeasuredWidth(), toastView.getWidth());
+  }
+
+  @Test public void viewIsPositionedAgainWhenDecorViewIsResized() {
+    decorView.layout(0, 0, 480, 800);
+    viewManager.onActivityResumed(activity);
+    viewManager.addView(toastView, params);
+
+    decorView.layout(0, 0, 800, 480);
+
+    assertEquals(480 - 50, toastView.getBottom());
+  }
+
+  @Test public void viewIsPositionedOnceDecorViewIsLaidOut() {
+    viewManager.onActivityResumed(activity);
+    viewManager.addView(toastView, params);
+
+    decorView.layout(0, 0, 480, 800);
+
+    assertEquals(800 - 50, toastView.getBottom());
+  }
+
+  @Test public void viewIsAddedAsWindowWhenNoActivityIsResumed() {
+    viewManager.onActivityResumed(activity);
+    viewManager.onActivityPaused(activity);
+
+    viewManager.addView(toastView, params);
+
+    assertFalse(toastView.getParent() instanceof ViewGroup);
+    viewManager.removeView(toastView);
+  }
+}
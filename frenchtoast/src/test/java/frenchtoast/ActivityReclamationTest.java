@@ -0,0 +1,130 @@
+package frenchtoast;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Toast;
+import info.piwai.frenchtoast.BuildConfig;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Churns through activities, some of which are never destroyed, while keeping the {@link Toasted}
+ * handles of their toasts, and checks that neither the activities nor the toast views stay in
+ * memory. Destroyed activities also have pending dipped toasts made with the activity context.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class ActivityReclamationTest {
+
+  private static final int ACTIVITY_COUNT = 30;
+  private static final int TOASTS_PER_ACTIVITY = 3;
+  private static final long TOAST_DURATION_MS = 2_000;
+  /** How long to wait for the GC, in total, before failing. */
+  private static final long GC_TIMEOUT_MS = 1_000;
+  private static final long GC_PAUSE_MS = 10;
+
+  private ActivityTester tester;
+  private final List<Toasted> toastedHandles = new ArrayList<>();
+  private final List<WeakReference<RotatableActivity>> activityRefs = new ArrayList<>();
+  private final List<WeakReference<View>> toastViewRefs = new ArrayList<>();
+
+  @Before public void setUp() {
+    tester = new ActivityTester();
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void activitiesAndToastViewsAreReclaimed() {
+    for (int i = 0; i < ACTIVITY_COUNT; i++) {
+      // Every third activity is left paused with pending toasts, as if it never got destroyed.
+      boolean skipDestroy = i % 3 == 0;
+      boolean rotate = i % 3 == 1;
+      churnActivity(skipDestroy, rotate);
+    }
+    tester.mainScheduler.advanceBy(TOAST_DURATION_MS * TOASTS_PER_ACTIVITY);
+
+    awaitCleared(activityRefs, "activities");
+    awaitCleared(toastViewRefs, "toast views");
+    for (Toasted toasted : toastedHandles) {
+      assertFalse(toasted.cancel());
+    }
+  }
+
+  /** Creates an activity, shows toasts in it, then pauses it and maybe destroys it. */
+  private void churnActivity(boolean skipDestroy, boolean rotate) {
+    FrenchToast.QueueHolder queueHolder = tester.queueHolder;
+    RotatableActivity activity = tester.createActivity(null);
+    queueHolder.onActivityResumed(activity);
+    Context appContext = activity.getApplicationContext();
+    for (int i = 0; i < TOASTS_PER_ACTIVITY; i++) {
+      // A pending toast made with the activity context keeps its activity in memory, so toasts
+      // of activities that may never be destroyed must be made with the application context.
+      Context toastContext = skipDestroy || i % 2 == 0 ? appContext : activity;
+      Toast toast = Toast.makeText(toastContext, "Toast " + i, Toast.LENGTH_SHORT);
+      toastViewRefs.add(new WeakReference<>(toast.getView()));
+      toastedHandles.add(tester.enqueueToast(activity, toast, TOAST_DURATION_MS));
+    }
+    tester.mainScheduler.advanceBy(TOAST_DURATION_MS / 2);
+    activity.changingConfigurations = rotate;
+    queueHolder.onActivityPaused(activity);
+    // A rotated activity retains its queue, which no new activity picks up.
+    queueHolder.onActivitySaveInstanceState(activity, new Bundle());
+    if (!skipDestroy) {
+      queueHolder.onActivityDestroyed(activity);
+    }
+    activityRefs.add(new WeakReference<>(activity));
+  }
+
+  private <T> void awaitCleared(List<WeakReference<T>> refs, String what) {
+    long deadlineMs = System.currentTimeMillis() + GC_TIMEOUT_MS;
+    while (true) {
+      runGc();
+      // Stale entries of the weak activity map are only expunged when the map is accessed, like
+      // any lifecycle callback does.
+      tester.queueHolder.createdActivities.size();
+      List<String> retained = describeRetained(refs);
+      if (retained.isEmpty()) {
+        return;
+      }
+      if (System.currentTimeMillis() >= deadlineMs) {
+        fail(retained.size() + " " + what + " retained after GC: " + retained);
+      }
+    }
+  }
+
+  /** Describes the referents that are still reachable, without keeping them reachable. */
+  private static <T> List<String> describeRetained(List<WeakReference<T>> refs) {
+    List<String> retained = new ArrayList<>();
+    for (WeakReference<T> ref : refs) {
+      T referent = ref.get();
+      if (referent != null) {
+        retained.add(referent.toString());
+      }
+    }
+    return retained;
+  }
+
+  private static void runGc() {
+    // System.gc() is only a hint, and finalizers may hold on to objects for one more cycle.
+    Runtime.getRuntime().gc();
+    System.runFinalization();
+    try {
+      Thread.sleep(GC_PAUSE_MS);
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
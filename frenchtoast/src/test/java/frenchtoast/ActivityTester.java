@@ -0,0 +1,73 @@
+package frenchtoast;
+
+import android.os.Bundle;
+import android.widget.Toast;
+import org.robolectric.Robolectric;
+import org.robolectric.util.Scheduler;
+
+/**
+ * Calls the lifecycle callbacks of a {@link FrenchToast.QueueHolder} the way activities do. The
+ * main looper is paused until {@link #release()} so that, like on a device, what
+ * onActivityDestroyed() posts runs after the next onActivityCreated().
+ */
+final class ActivityTester {
+
+  static final long TOAST_DURATION_MS = 1_000;
+
+  final Scheduler mainScheduler;
+  final FrenchToast.QueueHolder queueHolder;
+
+  ActivityTester() {
+    this(new QueueConfig.Builder());
+  }
+
+  ActivityTester(QueueConfig.Builder builder) {
+    mainScheduler = Robolectric.getForegroundThreadScheduler();
+    mainScheduler.pause();
+    QueueConfig config = builder.scheduler(RobolectricClock.newToastScheduler()).build();
+    queueHolder = new FrenchToast.QueueHolder(config);
+  }
+
+  void release() {
+    mainScheduler.unPause();
+  }
+
+  RotatableActivity createActivity(Bundle savedInstanceState) {
+    RotatableActivity activity = newActivity();
+    queueHolder.onActivityCreated(activity, savedInstanceState);
+    return activity;
+  }
+
+  /** Returns an activity that the queue holder hasn't been told about yet. */
+  static RotatableActivity newActivity() {
+    return Robolectric.buildActivity(RotatableActivity.class).create().get();
+  }
+
+  /** Pauses, saves and destroys the activity for a configuration change. */
+  Bundle rotate(RotatableActivity activity) {
+    activity.changingConfigurations = true;
+    queueHolder.onActivityPaused(activity);
+    Bundle outState = new Bundle();
+    queueHolder.onActivitySaveInstanceState(activity, outState);
+    queueHolder.onActivityDestroyed(activity);
+    return outState;
+  }
+
+  Toasted enqueueToast(RotatableActivity activity) {
+    Toast toast = Toast.makeText(activity.getApplicationContext(), "Toast", Toast.LENGTH_SHORT);
+    return enqueueToast(activity, toast, TOAST_DURATION_MS);
+  }
+
+  Toasted enqueueToast(RotatableActivity activity, Toast toast, long durationMs) {
+    return queueOf(activity).enqueue(Mixture.dip(toast), null, durationMs, null,
+        LifecycleToastQueue.DEFAULT_PRIORITY, false);
+  }
+
+  LifecycleToastQueue queueOf(RotatableActivity activity) {
+    return queueHolder.getOrCreateToastQueue(holderOf(activity));
+  }
+
+  FrenchToast.Holder holderOf(RotatableActivity activity) {
+    return queueHolder.createdActivities.get(activity);
+  }
+}
@@ -0,0 +1,175 @@
+package frenchtoast;
+
+import android.content.res.Resources;
+import info.piwai.frenchtoast.BuildConfig;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Submits toasts from a background thread and checks how they are handed over to the main
+ * thread, and how their {@link Toasted} handles cancel them.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class AnyThreadToasterTest {
+
+  private ActivityTester tester;
+  private ExecutorService background;
+  private FrenchToast.AnyThreadToaster toaster;
+  private int enqueuedCount;
+  private int canceledCount;
+
+  @Before public void setUp() {
+    tester = new ActivityTester(new QueueConfig.Builder().metrics(new ToastMetrics() {
+      @Override public void onEnqueued(int queueSize) {
+        enqueuedCount++;
+      }
+
+      @Override public void onCanceled() {
+        canceledCount++;
+      }
+    }));
+    background = Executors.newSingleThreadExecutor();
+    RotatableActivity activity = tester.createActivity(null);
+    tester.queueHolder.onActivityResumed(activity);
+    toaster = new FrenchToast.AnyThreadToaster(tester.queueHolder, activity);
+  }
+
+  @After public void tearDown() {
+    background.shutdownNow();
+    tester.release();
+  }
+
+  @Test public void submissionsAreEnqueuedInOneBatch() throws InterruptedException {
+    int pendingMessages = tester.mainScheduler.size();
+
+    inBackground(new Callable<Void>() {
+      @Override public Void call() {
+        toaster.showText("A");
+        toaster.showText("B");
+        toaster.showText("C");
+        return null;
+      }
+    });
+
+    assertEquals(pendingMessages + 1, tester.mainScheduler.size());
+    assertEquals(0, enqueuedCount);
+    tester.mainScheduler.advanceBy(0);
+    assertEquals(3, enqueuedCount);
+  }
+
+  @Test public void cancelBeforeSubmissionIsEnqueued() throws InterruptedException {
+    Toasted toasted = showTextInBackground("A");
+
+    assertTrue(toasted.cancel());
+    tester.mainScheduler.advanceBy(0);
+
+    assertEquals(0, enqueuedCount);
+    assertFalse(toasted.cancel());
+  }
+
+  @Test public void cancelAfterSubmissionIsEnqueued() throws InterruptedException {
+    Toasted toasted = showTextInBackground("A");
+    tester.mainScheduler.advanceBy(0);
+    assertEquals(1, enqueuedCount);
+
+    assertTrue(toasted.cancel());
+
+    assertEquals(1, canceledCount);
+    assertFalse(toasted.cancel());
+  }
+
+  @Test public void onlyFirstBackgroundCancelReturnsTrue() throws InterruptedException {
+    Toasted toasted = showTextInBackground("A");
+
+    assertTrue(cancelInBackground(toasted));
+    assertFalse(cancelInBackground(toasted));
+    tester.mainScheduler.advanceBy(0);
+
+    assertEquals(0, enqueuedCount);
+  }
+
+  @Test public void onlyFirstBackgroundCancelOfEnqueuedToastReturnsTrue()
+      throws InterruptedException {
+    Toasted toasted = showTextInBackground("A");
+    tester.mainScheduler.advanceBy(0);
+
+    assertTrue(cancelInBackground(toasted));
+    assertFalse(cancelInBackground(toasted));
+    tester.mainScheduler.advanceBy(0);
+
+    assertEquals(1, canceledCount);
+  }
+
+  @Test public void submissionThatThrowsDoesNotStrandTheNextOnes() throws InterruptedException {
+    inBackground(new Callable<Void>() {
+      @Override public Void call() {
+        // Resolved on the main thread, where the unknown id throws.
+        toaster.showText(0);
+        toaster.showText("B");
+        return null;
+      }
+    });
+
+    try {
+      tester.mainScheduler.advanceBy(0);
+      fail();
+    } catch (Resources.NotFoundException expected) {
+    }
+    tester.mainScheduler.advanceBy(0);
+
+    assertEquals(1, enqueuedCount);
+  }
+
+  @Test public void toastersThrowBeforeInstall() {
+    RotatableActivity activity = tester.createActivity(null);
+    try {
+      FrenchToast.withAnyThread(activity);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      FrenchToast.with(activity);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private Toasted showTextInBackground(final String text) throws InterruptedException {
+    return inBackground(new Callable<Toasted>() {
+      @Override public Toasted call() {
+        return toaster.showText(text);
+      }
+    });
+  }
+
+  private boolean cancelInBackground(final Toasted toasted) throws InterruptedException {
+    return inBackground(new Callable<Boolean>() {
+      @Override public Boolean call() {
+        return toasted.cancel();
+      }
+    });
+  }
+
+  /** Runs on the background thread and waits for the result. */
+  private <T> T inBackground(Callable<T> callable) throws InterruptedException {
+    try {
+      return background.submit(callable).get();
+    } catch (ExecutionException e) {
+      throw new AssertionError(e.getCause());
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package frenchtoast;
+
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Checks that an application scoped queue keeps its toasts while the user navigates. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class ApplicationQueueTest {
+
+  private ActivityTester tester;
+  private FrenchToast.QueueHolder queueHolder;
+  private int shownCount;
+
+  @Before public void setUp() {
+    tester = new ActivityTester(new QueueConfig.Builder()
+        .applicationScoped(true)
+        .metrics(new ToastMetrics() {
+          @Override public void onShown(long waitedMs) {
+            shownCount++;
+          }
+        }));
+    queueHolder = tester.queueHolder;
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void activitiesShareTheApplicationQueue() {
+    RotatableActivity first = tester.createActivity(null);
+    RotatableActivity second = tester.createActivity(null);
+
+    LifecycleToastQueue queue = tester.queueOf(first);
+
+    assertSame(queueHolder.applicationQueueOrNull, queue);
+    assertSame(queue, tester.queueOf(second));
+    assertNull(tester.holderOf(first).queueOrNull);
+  }
+
+  @Test public void pendingToastShowsInNextActivity() {
+    RotatableActivity first = tester.createActivity(null);
+    queueHolder.onActivityResumed(first);
+    tester.enqueueToast(first);
+    Toasted pending = tester.enqueueToast(first);
+
+    // The first activity starts the second one and finishes.
+    RotatableActivity second = tester.createActivity(null);
+    queueHolder.onActivityPaused(first);
+    queueHolder.onActivityResumed(second);
+    queueHolder.onActivityDestroyed(first);
+    tester.mainScheduler.advanceBy(ActivityTester.TOAST_DURATION_MS);
+
+    assertEquals(2, shownCount);
+    assertTrue(pending.cancel());
+  }
+
+  @Test public void queueIsPausedWhileNoActivityIsResumed() {
+    RotatableActivity activity = tester.createActivity(null);
+    queueHolder.onActivityResumed(activity);
+    queueHolder.onActivityPaused(activity);
+
+    tester.enqueueToast(activity);
+    tester.mainScheduler.advanceBy(ActivityTester.TOAST_DURATION_MS);
+    assertEquals(0, shownCount);
+    queueHolder.onActivityResumed(activity);
+
+    assertEquals(1, shownCount);
+  }
+
+  @Test public void applicationContextShowsInApplicationQueue() {
+    RotatableActivity activity = tester.createActivity(null);
+    queueHolder.onActivityResumed(activity);
+
+    queueHolder.toaster(RuntimeEnvironment.application).showText("Toast");
+
+    assertEquals(1, shownCount);
+  }
+
+  @Test public void applicationContextShowsInApplicationQueueFromAnyThreadToaster() {
+    RotatableActivity activity = tester.createActivity(null);
+    queueHolder.onActivityResumed(activity);
+
+    new FrenchToast.AnyThreadToaster(queueHolder, RuntimeEnvironment.application).showText("Toast");
+    tester.mainScheduler.advanceBy(0);
+
+    assertEquals(1, shownCount);
+  }
+
+  @Test public void applicationContextRequiresApplicationScope() {
+    ActivityTester activityQueues = new ActivityTester();
+    try {
+      activityQueues.queueHolder.toaster(RuntimeEnvironment.application);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    } finally {
+      activityQueues.release();
+    }
+  }
+}
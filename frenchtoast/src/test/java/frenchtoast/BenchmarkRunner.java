@@ -0,0 +1,112 @@
+package frenchtoast;
+
+import info.piwai.frenchtoast.BuildConfig;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures operations that need Robolectric, which JMH can't fork. Each operation is warmed up,
+ * then timed call by call along with the bytes the thread allocated, minus what measuring costs.
+ * Benchmarks only run with {@code ./gradlew test -Dfrenchtoast.benchmark=true}. Results are
+ * printed and appended to {@code build/benchmarks/results.tsv}, one line per operation tagged with
+ * the library version and git sha, so that runs of two versions on the same machine can be
+ * compared line by line.
+ */
+final class BenchmarkRunner {
+
+  /** Something to measure, and the untimed work that puts things back in place before each call. */
+  abstract static class Operation {
+    /** Called before each measured call, outside of the measurement. */
+    void prepare() {
+    }
+
+    abstract void run();
+  }
+
+  private static final int WARMUP_ITERATIONS =
+      Integer.getInteger("frenchtoast.benchmark.warmup", 5_000);
+  private static final int MEASURED_ITERATIONS =
+      Integer.getInteger("frenchtoast.benchmark.iterations", 20_000);
+  private static final File RESULTS_FILE = new File("build/benchmarks/results.tsv");
+  private static final String HEADER = "version\tsha\tbenchmark\tsize\tns/op\tbytes/op\n";
+
+  static boolean enabled() {
+    return Boolean.getBoolean("frenchtoast.benchmark");
+  }
+
+  private final com.sun.management.ThreadMXBean threadBean;
+  private final long threadId = Thread.currentThread().getId();
+  private final long overheadNanos;
+  private final long overheadBytes;
+
+  BenchmarkRunner() {
+    threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    threadBean.setThreadAllocatedMemoryEnabled(true);
+    long[] overhead = measure(new Operation() {
+      @Override void run() {
+      }
+    });
+    overheadNanos = overhead[0];
+    overheadBytes = overhead[1];
+  }
+
+  /**
+   * Measures that operation and reports it.
+   *
+   * @param size what the operation is measured against, e.g. how many toasts are in the queue.
+   */
+  void run(String benchmark, int size, Operation operation) {
+    long[] result = measure(operation);
+    long nanosPerOp = Math.max(0, result[0] - overheadNanos);
+    long bytesPerOp = Math.max(0, result[1] - overheadBytes);
+    String line = BuildConfig.LIBRARY_VERSION + '\t' + BuildConfig.GIT_SHA + '\t' + benchmark
+        + '\t' + size + '\t' + nanosPerOp + '\t' + bytesPerOp + '\n';
+    System.out.print(line);
+    append(line);
+  }
+
+  /** Returns the median nanoseconds and the mean bytes allocated per call. */
+  private long[] measure(Operation operation) {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      operation.prepare();
+      operation.run();
+    }
+    long[] nanos = new long[MEASURED_ITERATIONS];
+    long totalBytes = 0;
+    for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+      operation.prepare();
+      long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+      long startNanos = System.nanoTime();
+      operation.run();
+      nanos[i] = System.nanoTime() - startNanos;
+      totalBytes += threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+    }
+    Arrays.sort(nanos);
+    return new long[] { nanos[MEASURED_ITERATIONS / 2], totalBytes / MEASURED_ITERATIONS };
+  }
+
+  private static void append(String line) {
+    File directory = RESULTS_FILE.getParentFile();
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IllegalStateException("Could not create " + directory);
+    }
+    boolean newFile = !RESULTS_FILE.exists();
+    try {
+      Writer writer = new FileWriter(RESULTS_FILE, true);
+      try {
+        if (newFile) {
+          writer.write(HEADER);
+        }
+        writer.write(line);
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not write " + RESULTS_FILE, e);
+    }
+  }
+}
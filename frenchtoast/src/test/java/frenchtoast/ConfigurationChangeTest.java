@@ -0,0 +1,63 @@
+package frenchtoast;
+
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Checks that showing toasts stay on screen while their activity is recreated. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class ConfigurationChangeTest {
+
+  private QueueTester tester;
+
+  @Before public void setUp() {
+    tester = new QueueTester();
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void showingToastStaysForRemainingTime() {
+    tester.enqueue("A", 1_000);
+    tester.advanceBy(400);
+
+    tester.queue.pauseForConfigurationChange();
+    tester.assertOnScreen("A");
+    tester.advanceBy(100);
+    tester.queue.resume();
+
+    tester.assertOnScreen("A");
+    tester.advanceBy(499);
+    tester.assertOnScreen("A");
+    tester.advanceBy(1);
+    tester.assertOnScreen();
+  }
+
+  @Test public void nextToastWaitsForResume() {
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000);
+    tester.queue.pauseForConfigurationChange();
+
+    tester.advanceBy(1_000);
+    tester.assertOnScreen();
+    tester.queue.resume();
+
+    tester.assertOnScreen("B");
+  }
+
+  @Test public void pauseAfterConfigurationChangeHidesShowingToast() {
+    tester.enqueue("A", 1_000);
+    tester.queue.pauseForConfigurationChange();
+    tester.queue.resume();
+
+    tester.queue.pause();
+
+    tester.assertOnScreen();
+  }
+}
@@ -0,0 +1,88 @@
+package frenchtoast;
+
+import android.widget.Toast;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/** Checks that toasts enqueued with an equal dedupe key collapse into one. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class DedupeTest {
+
+  private QueueTester tester;
+
+  @Before public void setUp() {
+    tester = new QueueTester();
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void pendingToastIsCoalesced() {
+    tester.enqueue("A", 1_000);
+    Toasted deduped = enqueueDeduped("B", "key");
+
+    assertSame(deduped, tester.queue.coalesce("key", false));
+    tester.assertShowingInOrder("A", "B");
+  }
+
+  @Test public void showingToastIsCoalesced() {
+    Toasted deduped = enqueueDeduped("A", "key");
+
+    assertSame(deduped, tester.queue.coalesce("key", false));
+  }
+
+  @Test public void keyIsForgottenOnceToastHides() {
+    enqueueDeduped("A", "key");
+
+    tester.advanceBy(1_000);
+
+    assertNull(tester.queue.coalesce("key", false));
+  }
+
+  @Test public void keyIsForgottenOnceToastIsCanceled() {
+    enqueueDeduped("A", "key").cancel();
+
+    assertNull(tester.queue.coalesce("key", false));
+  }
+
+  @Test public void restartShowsCoalescedToastForWholeDurationAgain() {
+    enqueueDeduped("A", "key");
+    tester.advanceBy(600);
+
+    tester.queue.coalesce("key", true);
+
+    tester.advanceBy(999);
+    tester.assertOnScreen("A");
+    tester.advanceBy(1);
+    tester.assertOnScreen();
+  }
+
+  @Test public void restartDoesNotChangePendingToast() {
+    tester.enqueue("A", 1_000);
+    enqueueDeduped("B", "key");
+    tester.advanceBy(600);
+
+    tester.queue.coalesce("key", true);
+
+    tester.advanceBy(400);
+    tester.assertOnScreen("B");
+    tester.advanceBy(1_000);
+    tester.assertOnScreen();
+  }
+
+  private Toasted enqueueDeduped(String text, Object dedupeKey) {
+    Toast toast = Toast.makeText(tester.appContext, text, Toast.LENGTH_SHORT);
+    return tester.queue.enqueue(Mixture.dip(toast), null, 1_000, dedupeKey,
+        LifecycleToastQueue.DEFAULT_PRIORITY, false);
+  }
+}
@@ -0,0 +1,107 @@
+package frenchtoast;
+
+import android.content.res.Resources;
+import android.widget.Toast;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static frenchtoast.QueueTester.LOW;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/** Checks when toasts enqueued as recipes are mixed, and what happens when mixing fails. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class DeferInflationTest {
+
+  private static final long TOAST_DURATION_MS = 1_000;
+
+  private QueueTester tester;
+  private int mixCount;
+
+  @Before public void setUp() {
+    tester = new QueueTester();
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void pendingToastIsMixedWhenItShows() {
+    tester.enqueue("A", TOAST_DURATION_MS);
+    enqueueRecipe("B");
+    assertEquals(0, mixCount);
+
+    tester.advanceBy(TOAST_DURATION_MS);
+
+    assertEquals(1, mixCount);
+    tester.assertOnScreen("B");
+  }
+
+  @Test public void toastThatFailsToMixIsRemoved() {
+    tester.enqueue("A", TOAST_DURATION_MS);
+    Toasted failing = enqueueFailingRecipe();
+    enqueueRecipe("C");
+
+    try {
+      tester.advanceBy(TOAST_DURATION_MS);
+      fail();
+    } catch (Resources.NotFoundException expected) {
+    }
+
+    assertFalse(failing.cancel());
+    tester.advanceBy(0);
+    tester.assertOnScreen("C");
+  }
+
+  @Test public void firstToastThatFailsToMixThrowsWhenEnqueued() {
+    try {
+      enqueueFailingRecipe();
+      fail();
+    } catch (Resources.NotFoundException expected) {
+    }
+    enqueueRecipe("B");
+    tester.advanceBy(0);
+
+    tester.assertOnScreen("B");
+  }
+
+  @Test public void unknownLayoutThrowsFromTheToaster() {
+    ActivityTester activityTester =
+        new ActivityTester(new QueueConfig.Builder().deferInflation(true));
+    try {
+      RotatableActivity activity = activityTester.createActivity(null);
+      activityTester.queueHolder.onActivityResumed(activity);
+      try {
+        activityTester.queueHolder.toaster(activity).showLayout(0);
+        fail();
+      } catch (Resources.NotFoundException expected) {
+      }
+    } finally {
+      activityTester.release();
+    }
+  }
+
+  private Toasted enqueueRecipe(final String text) {
+    return tester.queue.enqueue(null, new Recipe() {
+      @Override public Mixture mix() {
+        mixCount++;
+        return Mixture.dip(Toast.makeText(tester.appContext, text, Toast.LENGTH_SHORT));
+      }
+    }, TOAST_DURATION_MS, null, LOW, false);
+  }
+
+  private Toasted enqueueFailingRecipe() {
+    return tester.queue.enqueue(null, new Recipe() {
+      @Override public Mixture mix() {
+        throw new Resources.NotFoundException("Layout that fails to inflate");
+      }
+    }, TOAST_DURATION_MS, null, LOW, false);
+  }
+}
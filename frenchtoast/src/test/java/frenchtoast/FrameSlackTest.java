@@ -0,0 +1,91 @@
+package frenchtoast;
+
+import android.content.Context;
+import android.view.WindowManager;
+import android.widget.Toast;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static android.content.Context.WINDOW_SERVICE;
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Checks that toasts aligned to frames hide and show from a frame callback, and how early they
+ * may hide depending on the refresh rate.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class FrameSlackTest {
+
+  @Test public void slackIsHalfAFrame() {
+    assertEquals(8, LifecycleToastQueue.halfFrameMs(60));
+    assertEquals(5, LifecycleToastQueue.halfFrameMs(90));
+    assertEquals(4, LifecycleToastQueue.halfFrameMs(120));
+  }
+
+  @Test public void unknownRefreshRateFallsBackTo60Hz() {
+    assertEquals(8, LifecycleToastQueue.halfFrameMs(0));
+    assertEquals(8, LifecycleToastQueue.halfFrameMs(-1));
+  }
+
+  @Test public void refreshRateIsReadFromDefaultDisplay() {
+    Context appContext = RuntimeEnvironment.application;
+    setRefreshRate(120);
+    Toast toast = Toast.makeText(appContext, "Toast", Toast.LENGTH_SHORT);
+
+    Mixture mixture = Mixture.dip(toast);
+
+    assertEquals(120, mixture.refreshRate(), 0);
+  }
+
+  @Test public void dueToastHidesAndNextShowsInSameFrame() {
+    setRefreshRate(60);
+    QueueTester tester = new QueueTester();
+    try {
+      tester.newQueue(new QueueConfig.Builder().alignToFrames(true));
+      tester.enqueue("A", 1_000);
+      tester.enqueue("B", 1_000);
+      tester.assertOnScreen();
+
+      // Runs the frame callback.
+      tester.mainScheduler.advanceToNextPostedRunnable();
+      tester.assertOnScreen("A");
+      // The hide timer fires half a frame early, then the frame callback swaps the toasts.
+      tester.advanceBy(1_000 - 8 - 1);
+      tester.assertOnScreen("A");
+      tester.advanceBy(1);
+      tester.assertOnScreen("B");
+    } finally {
+      tester.release();
+    }
+  }
+
+  @Test public void refreshRateIsReadOncePerQueue() {
+    setRefreshRate(60);
+    QueueTester tester = new QueueTester();
+    try {
+      tester.newQueue(new QueueConfig.Builder().alignToFrames(true));
+      tester.enqueue("A", 1_000);
+      tester.mainScheduler.advanceToNextPostedRunnable();
+      setRefreshRate(120);
+      tester.enqueue("B", 1_000);
+
+      // Still half a frame at 60 Hz.
+      tester.advanceBy(1_000 - 8);
+      tester.assertOnScreen("B");
+    } finally {
+      tester.release();
+    }
+  }
+
+  private static void setRefreshRate(float refreshRate) {
+    Context appContext = RuntimeEnvironment.application;
+    WindowManager windowManager = (WindowManager) appContext.getSystemService(WINDOW_SERVICE);
+    shadowOf(windowManager.getDefaultDisplay()).setRefreshRate(refreshRate);
+  }
+}
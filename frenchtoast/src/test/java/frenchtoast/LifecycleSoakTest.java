@@ -0,0 +1,271 @@
+package frenchtoast;
+
+import android.os.Bundle;
+import info.piwai.frenchtoast.BuildConfig;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Drives {@link FrenchToast.QueueHolder} through many activity lifecycles, with rotations mixed
+ * in and toasts enqueued throughout, then checks that the holder let go of every activity and
+ * queue. The number of cycles can be set with a system property, e.g. {@code ./gradlew test
+ * -Dfrenchtoast.soak.cycles=10000}. With {@code -Dfrenchtoast.benchmark=true}, the callback times,
+ * peaks and the heap retained by the measured cycles are printed, and the test also fails when a
+ * callback exceeds its mean or p99 time budget, which can be set with system properties too.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class LifecycleSoakTest {
+
+  private static final long TOAST_DURATION_MS = 400;
+  /** How long each activity stays resumed, enough to show the toasts enqueued in a cycle. */
+  private static final long RESUMED_MS = 1_000;
+  private static final int GC_ATTEMPTS = 5;
+
+  private final int cycles = Integer.getInteger("frenchtoast.soak.cycles", 1_000);
+  private final int rotateEvery = Integer.getInteger("frenchtoast.soak.rotateEvery", 3);
+  private final long maxMeanCallbackMicros =
+      Long.getLong("frenchtoast.soak.maxMeanCallbackMicros", 1_000);
+  private final long maxP99CallbackMicros =
+      Long.getLong("frenchtoast.soak.maxP99CallbackMicros", 5_000);
+  private final int maxCreatedActivities =
+      Integer.getInteger("frenchtoast.soak.maxCreatedActivities", 1);
+  private final int maxRetainedQueues = Integer.getInteger("frenchtoast.soak.maxRetainedQueues", 1);
+  private final int maxPendingMessages =
+      Integer.getInteger("frenchtoast.soak.maxPendingMessages", 4);
+
+  private ActivityTester tester;
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void activityQueues() {
+    soak("activity queues", new QueueConfig.Builder());
+  }
+
+  @Test public void applicationQueue() {
+    soak("application queue", new QueueConfig.Builder()
+        .applicationScoped(true)
+        .resumeWithRemainingTime(200, MILLISECONDS));
+  }
+
+  private void soak(String name, QueueConfig.Builder builder) {
+    tester = new ActivityTester(builder);
+    FrenchToast.QueueHolder queueHolder = tester.queueHolder;
+    Scheduler mainScheduler = tester.mainScheduler;
+    int warmupCycles = cycles / 10;
+    CallbackStats created = new CallbackStats("onActivityCreated", cycles);
+    CallbackStats resumed = new CallbackStats("onActivityResumed", cycles);
+    CallbackStats paused = new CallbackStats("onActivityPaused", cycles);
+    CallbackStats saved = new CallbackStats("onActivitySaveInstanceState", cycles);
+    CallbackStats destroyed = new CallbackStats("onActivityDestroyed", cycles);
+    int peakCreatedActivities = 0;
+    int peakRetainedQueues = 0;
+    int peakPendingMessages = 0;
+    int rotations = 0;
+    int toasts = 0;
+    long baselineHeapBytes = 0;
+    List<WeakReference<RotatableActivity>> activityRefs = new ArrayList<>(cycles);
+
+    Bundle savedInstanceState = null;
+    for (int cycle = 0; cycle < cycles; cycle++) {
+      boolean measured = cycle >= warmupCycles;
+      if (cycle == warmupCycles && BenchmarkRunner.enabled()) {
+        // Classes are loaded and caches are filled by now, later growth is what the cycles keep.
+        baselineHeapBytes = usedHeapBytesAfterGc();
+      }
+      RotatableActivity activity = ActivityTester.newActivity();
+      long startNanos = System.nanoTime();
+      queueHolder.onActivityCreated(activity, savedInstanceState);
+      created.record(measured, System.nanoTime() - startNanos);
+      peakCreatedActivities = Math.max(peakCreatedActivities, queueHolder.createdActivities.size());
+      activityRefs.add(new WeakReference<>(activity));
+
+      startNanos = System.nanoTime();
+      queueHolder.onActivityResumed(activity);
+      resumed.record(measured, System.nanoTime() - startNanos);
+
+      enqueueToast(activity, toasts++);
+      mainScheduler.advanceBy(RESUMED_MS / 2);
+      enqueueToast(activity, toasts++);
+      mainScheduler.advanceBy(RESUMED_MS / 2);
+
+      boolean rotating = cycle % rotateEvery == rotateEvery - 1;
+      activity.changingConfigurations = rotating;
+
+      startNanos = System.nanoTime();
+      queueHolder.onActivityPaused(activity);
+      paused.record(measured, System.nanoTime() - startNanos);
+
+      // Toasts enqueued while paused wait for the next resume, possibly in the next activity.
+      enqueueToast(activity, toasts++);
+
+      Bundle outState = new Bundle();
+      startNanos = System.nanoTime();
+      queueHolder.onActivitySaveInstanceState(activity, outState);
+      saved.record(measured, System.nanoTime() - startNanos);
+
+      startNanos = System.nanoTime();
+      queueHolder.onActivityDestroyed(activity);
+      destroyed.record(measured, System.nanoTime() - startNanos);
+      peakRetainedQueues = Math.max(peakRetainedQueues, queueHolder.retainedQueues.size());
+
+      if (rotating) {
+        // The new activity is created in the same message as the old one is destroyed.
+        rotations++;
+        savedInstanceState = outState;
+      } else {
+        savedInstanceState = null;
+        mainScheduler.advanceBy(0);
+      }
+      peakPendingMessages = Math.max(peakPendingMessages, mainScheduler.size());
+    }
+    mainScheduler.advanceBy(RESUMED_MS);
+
+    List<CallbackStats> callbacks = Arrays.asList(created, resumed, paused, saved, destroyed);
+    if (BenchmarkRunner.enabled()) {
+      // Only reported: how much the heap grows depends on when the GC last ran.
+      long retainedKilobytes = (usedHeapBytesAfterGc() - baselineHeapBytes) / 1_024;
+      System.out.println("FrenchToast soak, " + name + ": " + cycles + " cycles, " + rotations
+          + " rotations, " + toasts + " toasts, first " + warmupCycles + " cycles not timed");
+      for (CallbackStats callback : callbacks) {
+        System.out.println("  " + callback);
+      }
+      System.out.println("  createdActivities peak " + peakCreatedActivities
+          + ", end " + queueHolder.createdActivities.size());
+      System.out.println("  retainedQueues peak " + peakRetainedQueues
+          + ", end " + queueHolder.retainedQueues.size());
+      System.out.println("  pending messages peak " + peakPendingMessages
+          + ", end " + mainScheduler.size());
+      System.out.println("  heap retained by measured cycles " + retainedKilobytes + "KB");
+    }
+
+    List<String> exceeded = new ArrayList<>();
+    if (BenchmarkRunner.enabled()) {
+      // Callback times depend on the machine and what else runs on it.
+      for (CallbackStats callback : callbacks) {
+        if (callback.meanMicros() > maxMeanCallbackMicros) {
+          exceeded.add(callback.name + " mean " + callback.meanMicros() + "us > "
+              + maxMeanCallbackMicros + "us");
+        }
+        if (callback.percentileMicros(99) > maxP99CallbackMicros) {
+          exceeded.add(callback.name + " p99 " + callback.percentileMicros(99) + "us > "
+              + maxP99CallbackMicros + "us");
+        }
+      }
+    }
+    if (peakCreatedActivities > maxCreatedActivities) {
+      exceeded.add("createdActivities peak " + peakCreatedActivities + " > "
+          + maxCreatedActivities);
+    }
+    if (peakRetainedQueues > maxRetainedQueues) {
+      exceeded.add("retainedQueues peak " + peakRetainedQueues + " > " + maxRetainedQueues);
+    }
+    if (peakPendingMessages > maxPendingMessages) {
+      exceeded.add("pending messages peak " + peakPendingMessages + " > " + maxPendingMessages);
+    }
+    int retainedActivities = countRetainedAfterGc(activityRefs);
+    if (retainedActivities > 0) {
+      exceeded.add(retainedActivities + " activities retained after GC");
+    }
+    if (!exceeded.isEmpty()) {
+      fail("Soak budget exceeded: " + exceeded);
+    }
+    assertEquals(0, queueHolder.createdActivities.size());
+    assertEquals(0, queueHolder.retainedQueues.size());
+  }
+
+  private void enqueueToast(RotatableActivity activity, int toastIndex) {
+    LifecycleToastQueue queue = tester.queueOf(activity);
+    ViewPool viewPool = tester.queueHolder.viewPool;
+    Mixture mixture = viewPool.mixText(activity.getApplicationContext(), "Toast " + toastIndex);
+    // Mixed priorities, and every so often a toast that interrupts the one showing.
+    queue.enqueue(mixture, TOAST_DURATION_MS, toastIndex % 3, toastIndex % 5 == 0);
+  }
+
+  /** Returns how many of the referents are still reachable once garbage is collected. */
+  private static int countRetainedAfterGc(List<WeakReference<RotatableActivity>> refs) {
+    int retained = 0;
+    for (int attempt = 0; attempt < GC_ATTEMPTS; attempt++) {
+      Runtime.getRuntime().gc();
+      retained = 0;
+      for (WeakReference<RotatableActivity> ref : refs) {
+        if (ref.get() != null) {
+          retained++;
+        }
+      }
+      if (retained == 0) {
+        break;
+      }
+    }
+    return retained;
+  }
+
+  /** The heap in use once garbage is collected, the lowest of a few attempts. */
+  private static long usedHeapBytesAfterGc() {
+    Runtime runtime = Runtime.getRuntime();
+    long usedBytes = Long.MAX_VALUE;
+    for (int i = 0; i < GC_ATTEMPTS; i++) {
+      runtime.gc();
+      usedBytes = Math.min(usedBytes, runtime.totalMemory() - runtime.freeMemory());
+    }
+    return usedBytes;
+  }
+
+  /** The durations of one lifecycle callback, across all measured cycles. */
+  static final class CallbackStats {
+    final String name;
+    private final long[] nanos;
+    private int count;
+
+    CallbackStats(String name, int capacity) {
+      this.name = name;
+      nanos = new long[capacity];
+    }
+
+    void record(boolean measured, long durationNanos) {
+      if (measured) {
+        nanos[count++] = durationNanos;
+      }
+    }
+
+    long meanMicros() {
+      if (count == 0) {
+        return 0;
+      }
+      long totalNanos = 0;
+      for (int i = 0; i < count; i++) {
+        totalNanos += nanos[i];
+      }
+      return totalNanos / count / 1_000;
+    }
+
+    long percentileMicros(int percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long[] sorted = Arrays.copyOf(nanos, count);
+      Arrays.sort(sorted);
+      int index = Math.min(count - 1, count * percentile / 100);
+      return sorted[index] / 1_000;
+    }
+
+    @Override public String toString() {
+      return name + ": mean " + meanMicros() + "us, p99 " + percentileMicros(99) + "us, max "
+          + percentileMicros(100) + "us over " + count + " calls";
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package frenchtoast;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.PixelFormat;
+import android.os.Build;
+import android.view.Gravity;
+import android.view.View;
+import android.view.WindowManager;
+import android.view.accessibility.AccessibilityManager;
+import android.widget.Toast;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static android.content.Context.ACCESSIBILITY_SERVICE;
+import static android.content.Context.WINDOW_SERVICE;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures a show and hide cycle of a {@link Mixture}, next to the same cycle done the way Mixture
+ * did before it cached the window services and the resolved layout params. The window manager of
+ * Robolectric doesn't add real windows, so this compares the work done around adding the window.
+ *
+ * @see BenchmarkRunner
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class MixtureBenchmark {
+
+  private BenchmarkRunner runner;
+  private Context appContext;
+
+  @Before public void setUp() {
+    assumeTrue("Run with -Dfrenchtoast.benchmark=true", BenchmarkRunner.enabled());
+    runner = new BenchmarkRunner();
+    appContext = RuntimeEnvironment.application;
+  }
+
+  @Test public void showHide() {
+    final Mixture mixture = Mixture.dip(newToast());
+    runner.run("mixtureShowHide", 1, new BenchmarkRunner.Operation() {
+      @Override void run() {
+        mixture.show();
+        mixture.hide();
+      }
+    });
+  }
+
+  @Test public void showHideUncached() {
+    final UncachedToastWindow window = new UncachedToastWindow(newToast());
+    runner.run("mixtureShowHideUncached", 1, new BenchmarkRunner.Operation() {
+      @Override void run() {
+        window.show();
+        window.hide();
+      }
+    });
+  }
+
+  private Toast newToast() {
+    Toast toast = Toast.makeText(appContext, "Benchmark", Toast.LENGTH_SHORT);
+    toast.setGravity(Gravity.BOTTOM | Gravity.CENTER_HORIZONTAL, 0, 64);
+    return toast;
+  }
+
+  /**
+   * Shows and hides a toast window like Mixture did before the caching: the window services are
+   * looked up and the layout params are resolved again for every show and hide.
+   */
+  static final class UncachedToastWindow {
+    private final Toast toast;
+    private final WindowManager.LayoutParams params = new WindowManager.LayoutParams();
+
+    UncachedToastWindow(Toast toast) {
+      this.toast = toast;
+      params.height = WindowManager.LayoutParams.WRAP_CONTENT;
+      params.width = WindowManager.LayoutParams.WRAP_CONTENT;
+      params.format = PixelFormat.TRANSLUCENT;
+      params.windowAnimations = android.R.style.Animation_Toast;
+      params.type = WindowManager.LayoutParams.TYPE_TOAST;
+      params.setTitle("Toast");
+      params.flags = WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON
+          | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+          | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE;
+    }
+
+    void show() {
+      View view = toast.getView();
+      Context context = view.getContext();
+      WindowManager windowManager = (WindowManager) context.getSystemService(WINDOW_SERVICE);
+      Configuration config = context.getResources().getConfiguration();
+      int gravity = toast.getGravity();
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+        gravity = Gravity.getAbsoluteGravity(gravity, config.getLayoutDirection());
+      }
+      params.gravity = gravity;
+      if ((gravity & Gravity.HORIZONTAL_GRAVITY_MASK) == Gravity.FILL_HORIZONTAL) {
+        params.horizontalWeight = 1.0f;
+      }
+      if ((gravity & Gravity.VERTICAL_GRAVITY_MASK) == Gravity.FILL_VERTICAL) {
+        params.verticalWeight = 1.0f;
+      }
+      params.x = toast.getXOffset();
+      params.y = toast.getYOffset();
+      params.verticalMargin = toast.getVerticalMargin();
+      params.horizontalMargin = toast.getHorizontalMargin();
+      params.packageName = context.getPackageName();
+      if (view.getParent() != null) {
+        windowManager.removeView(view);
+      }
+      windowManager.addView(view, params);
+      AccessibilityManager accessibilityManager =
+          (AccessibilityManager) context.getSystemService(ACCESSIBILITY_SERVICE);
+      accessibilityManager.isEnabled();
+    }
+
+    void hide() {
+      View view = toast.getView();
+      if (view.getParent() != null) {
+        Context context = view.getContext();
+        WindowManager windowManager = (WindowManager) context.getSystemService(WINDOW_SERVICE);
+        windowManager.removeView(view);
+      }
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package frenchtoast;
+
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static frenchtoast.QueueTester.HIGH;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/** Checks what a full queue drops with each {@link OverflowPolicy}. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class OverflowPolicyTest {
+
+  private QueueTester tester;
+
+  @Before public void setUp() {
+    tester = new QueueTester();
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void dropOldestDropsOldestPendingToastOfLowestPriority() {
+    tester.newQueue(new QueueConfig.Builder().capacity(3, OverflowPolicy.DROP_OLDEST));
+    tester.enqueue("A", 1_000);
+    Toasted b = tester.enqueue("B", 1_000);
+    tester.enqueue("C", 1_000);
+
+    tester.enqueue("D", 1_000);
+
+    assertFalse(b.cancel());
+    assertEquals(1, tester.queue.droppedCount());
+    tester.assertShowingInOrder("A", "C", "D");
+  }
+
+  @Test public void dropOldestKeepsShowingToastOfLowestPriority() {
+    tester.newQueue(new QueueConfig.Builder().capacity(2, OverflowPolicy.DROP_OLDEST));
+    tester.enqueue("A", 1_000);
+    Toasted b = tester.enqueue("B", 1_000);
+
+    tester.enqueue("C", 1_000);
+
+    assertFalse(b.cancel());
+    tester.assertShowingInOrder("A", "C");
+  }
+
+  @Test public void dropNewestIgnoresNewToast() {
+    tester.newQueue(new QueueConfig.Builder().capacity(2, OverflowPolicy.DROP_NEWEST));
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000);
+
+    Toasted c = tester.enqueue("C", 1_000, HIGH, false);
+
+    assertFalse(c.cancel());
+    assertEquals(1, tester.queue.droppedCount());
+    tester.assertShowingInOrder("A", "B");
+  }
+
+  @Test public void replaceLastDropsLastToast() {
+    tester.newQueue(new QueueConfig.Builder().capacity(2, OverflowPolicy.REPLACE_LAST));
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000);
+
+    tester.enqueue("C", 1_000);
+
+    tester.assertShowingInOrder("A", "C");
+  }
+}
@@ -0,0 +1,175 @@
+package frenchtoast;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Resources;
+import android.util.DisplayMetrics;
+import android.widget.TextView;
+import android.widget.Toast;
+import info.piwai.frenchtoast.BuildConfig;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static android.view.View.MeasureSpec.AT_MOST;
+import static android.view.View.MeasureSpec.makeMeasureSpec;
+import static frenchtoast.QueueTester.LOW;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks that the toast that shows next is measured while the main thread is idle, at the width
+ * its window will measure it at, and isn't measured again when it shows.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class PremeasureTest {
+
+  private static final int DIALOG_WIDTH_RES_ID = 0x7f0a0001;
+  private static final int DIALOG_WIDTH_PX = 540;
+
+  private QueueTester tester;
+
+  @Before public void setUp() {
+    tester = new QueueTester();
+    Mixture.prefDialogWidthResId = Mixture.RES_ID_UNRESOLVED;
+  }
+
+  @After public void tearDown() {
+    Mixture.prefDialogWidthResId = Mixture.RES_ID_UNRESOLVED;
+    tester.release();
+  }
+
+  @Test public void pendingToastIsMeasuredWhileIdle() {
+    tester.newQueue(new QueueConfig.Builder().premeasure(true));
+    tester.enqueue("A", 1_000);
+    MeasuredView pending = enqueueMeasuredView();
+    assertEquals(0, pending.widthMeasureSpecs.size());
+
+    QueueTester.runIdleHandlers();
+
+    assertEquals(1, pending.widthMeasureSpecs.size());
+    assertFalse(pending.isLayoutRequested());
+  }
+
+  @Test public void premeasuredToastIsNotMeasuredAgainWhenItShows() {
+    tester.newQueue(new QueueConfig.Builder().premeasure(true));
+    tester.enqueue("A", 1_000);
+    MeasuredView pending = enqueueMeasuredView();
+    QueueTester.runIdleHandlers();
+
+    tester.advanceBy(1_000);
+
+    assertEquals(1, tester.screen.getChildCount());
+    assertEquals(1, pending.widthMeasureSpecs.size());
+  }
+
+  @Test public void premeasuredStackedToastIsNotMeasuredAgainWhenItShows() {
+    // Stacked toasts are measured before they show, to offset the toasts after them.
+    tester.newQueue(new QueueConfig.Builder().premeasure(true).maxVisible(2));
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 2_000);
+    MeasuredView pending = enqueueMeasuredView();
+    QueueTester.runIdleHandlers();
+
+    tester.advanceBy(1_000);
+
+    assertEquals(2, tester.screen.getChildCount());
+    assertEquals(1, pending.widthMeasureSpecs.size());
+  }
+
+  @Test public void firstMeasuredAtDialogWidth() {
+    MeasuredView view = new MeasuredView(withScreen(1080, DIALOG_WIDTH_RES_ID));
+
+    premeasure(view);
+
+    assertEquals(DIALOG_WIDTH_RES_ID, Mixture.prefDialogWidthResId);
+    assertEquals(1, view.widthMeasureSpecs.size());
+    assertEquals(makeMeasureSpec(DIALOG_WIDTH_PX, AT_MOST), (int) view.widthMeasureSpecs.get(0));
+  }
+
+  @Test public void measuredAtScreenWidthWithoutDialogWidth() {
+    MeasuredView view = new MeasuredView(withScreen(1080, 0));
+
+    premeasure(view);
+
+    assertEquals(0, Mixture.prefDialogWidthResId);
+    assertEquals(1, view.widthMeasureSpecs.size());
+    assertEquals(makeMeasureSpec(1080, AT_MOST), (int) view.widthMeasureSpecs.get(0));
+  }
+
+  @Test public void measuredAtScreenWidthWhenNarrowerThanDialogWidth() {
+    MeasuredView view = new MeasuredView(withScreen(480, DIALOG_WIDTH_RES_ID));
+
+    premeasure(view);
+
+    assertEquals(1, view.widthMeasureSpecs.size());
+    assertEquals(makeMeasureSpec(480, AT_MOST), (int) view.widthMeasureSpecs.get(0));
+  }
+
+  /**
+   * Returns a context which screen is that wide, and which config_prefDialogWidth resolves to
+   * that id, 0 meaning the platform doesn't have it.
+   */
+  private Context withScreen(int widthPixels, final int dialogWidthResId) {
+    Resources resources = tester.appContext.getResources();
+    final DisplayMetrics displayMetrics = new DisplayMetrics();
+    displayMetrics.setTo(resources.getDisplayMetrics());
+    displayMetrics.widthPixels = widthPixels;
+    displayMetrics.heightPixels = 1920;
+    final Resources screenResources = new Resources(resources.getAssets(), displayMetrics,
+        resources.getConfiguration()) {
+      @Override public int getIdentifier(String name, String defType, String defPackage) {
+        return "config_prefDialogWidth".equals(name) ? dialogWidthResId
+            : super.getIdentifier(name, defType, defPackage);
+      }
+
+      @Override public float getDimension(int id) {
+        return id == DIALOG_WIDTH_RES_ID ? DIALOG_WIDTH_PX : super.getDimension(id);
+      }
+
+      @Override public DisplayMetrics getDisplayMetrics() {
+        return displayMetrics;
+      }
+    };
+    return new ContextWrapper(tester.appContext) {
+      @Override public Resources getResources() {
+        return screenResources;
+      }
+    };
+  }
+
+  private MeasuredView enqueueMeasuredView() {
+    MeasuredView view = new MeasuredView(tester.appContext);
+    Toast toast = new Toast(tester.appContext);
+    toast.setView(view);
+    tester.queue.enqueue(Mixture.dip(toast), null, 1_000, null, LOW, false);
+    return view;
+  }
+
+  private void premeasure(MeasuredView view) {
+    Toast toast = new Toast(tester.appContext);
+    toast.setView(view);
+    Mixture.dip(toast).premeasure();
+  }
+
+  /** Records the width constraint of each measure pass. */
+  static final class MeasuredView extends TextView {
+    final List<Integer> widthMeasureSpecs = new ArrayList<>();
+
+    MeasuredView(Context context) {
+      super(context);
+      setText("Toast");
+    }
+
+    @Override protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+      widthMeasureSpecs.add(widthMeasureSpec);
+      super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+    }
+  }
+}
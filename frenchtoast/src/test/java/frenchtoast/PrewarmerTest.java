@@ -0,0 +1,70 @@
+package frenchtoast;
+
+import android.content.Context;
+import android.os.Looper;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Checks that prewarming fills the view pool one view per idle pass, then stops. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class PrewarmerTest {
+
+  private static final int FIRST_LAYOUT = android.R.layout.simple_list_item_1;
+  private static final int SECOND_LAYOUT = android.R.layout.simple_list_item_2;
+
+  private final ViewPool viewPool = new ViewPool();
+  private Context appContext;
+
+  @Before public void setUp() {
+    appContext = RuntimeEnvironment.application;
+  }
+
+  @Test public void inflatesOneViewPerIdlePass() {
+    Prewarmer prewarmer =
+        new Prewarmer(appContext, viewPool, new int[] { FIRST_LAYOUT, SECOND_LAYOUT }, false);
+
+    assertTrue(prewarmer.queueIdle());
+    assertNull(viewPool.obtain(FIRST_LAYOUT));
+    assertNotNull(viewPool.obtain(ViewPool.TEXT_LAYOUT));
+
+    assertTrue(prewarmer.queueIdle());
+    assertNull(viewPool.obtain(SECOND_LAYOUT));
+    assertNotNull(viewPool.obtain(FIRST_LAYOUT));
+
+    assertFalse(prewarmer.queueIdle());
+    assertNotNull(viewPool.obtain(SECOND_LAYOUT));
+  }
+
+  @Test public void withoutLayoutsOnlyInflatesTheTextView() {
+    Prewarmer prewarmer = new Prewarmer(appContext, viewPool, new int[0], false);
+
+    assertFalse(prewarmer.queueIdle());
+    assertNotNull(viewPool.obtain(ViewPool.TEXT_LAYOUT));
+  }
+
+  @Test public void unregistersOnceThePoolIsFilled() {
+    Looper.myQueue().addIdleHandler(
+        new Prewarmer(appContext, viewPool, new int[] { FIRST_LAYOUT }, false));
+
+    QueueTester.runIdleHandlers();
+    QueueTester.runIdleHandlers();
+    assertNotNull(viewPool.obtain(ViewPool.TEXT_LAYOUT));
+    assertNotNull(viewPool.obtain(FIRST_LAYOUT));
+
+    QueueTester.runIdleHandlers();
+
+    assertNull(viewPool.obtain(ViewPool.TEXT_LAYOUT));
+    assertNull(viewPool.obtain(FIRST_LAYOUT));
+  }
+}
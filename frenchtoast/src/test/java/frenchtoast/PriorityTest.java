@@ -0,0 +1,132 @@
+package frenchtoast;
+
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static frenchtoast.QueueTester.HIGH;
+import static frenchtoast.QueueTester.LOW;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/** Checks the order in which toasts of different priorities show. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class PriorityTest {
+
+  private QueueTester tester;
+
+  @Before public void setUp() {
+    tester = new QueueTester();
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void higherPriorityShowsBeforePendingToasts() {
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000);
+    tester.enqueue("C", 1_000, HIGH, false);
+
+    tester.assertShowingInOrder("A", "C", "B");
+  }
+
+  @Test public void higherPriorityWaitsBehindShowingToast() {
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000, HIGH, false);
+
+    tester.assertOnScreen("A");
+    tester.advanceBy(1_000);
+    tester.assertOnScreen("B");
+  }
+
+  @Test public void interruptedToastShowsAgainAfterInterruptingToast() {
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000);
+    tester.advanceBy(400);
+
+    tester.enqueue("C", 1_000, HIGH, true);
+
+    tester.assertOnScreen("C");
+    tester.advanceBy(1_000);
+    // Shown again for its whole duration.
+    tester.assertOnScreen("A");
+    tester.advanceBy(999);
+    tester.assertOnScreen("A");
+    tester.advanceBy(1);
+    tester.assertOnScreen("B");
+  }
+
+  @Test public void interruptedToastShowsAfterPendingToastsOfHigherPriority() {
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000, HIGH, false);
+
+    tester.enqueue("C", 1_000, HIGH, true);
+
+    tester.assertShowingInOrder("B", "C", "A");
+  }
+
+  @Test public void samePriorityDoesNotInterrupt() {
+    tester.enqueue("A", 1_000);
+
+    tester.enqueue("B", 1_000, LOW, true);
+
+    tester.assertShowingInOrder("A", "B");
+  }
+
+  @Test public void dropOldestKeepsOlderToastsOfHigherPriority() {
+    tester.newQueue(new QueueConfig.Builder().capacity(3, OverflowPolicy.DROP_OLDEST));
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000, HIGH, false);
+    Toasted c = tester.enqueue("C", 1_000);
+
+    tester.enqueue("D", 1_000, HIGH, false);
+
+    assertFalse(c.cancel());
+    tester.assertShowingInOrder("A", "B", "D");
+  }
+
+  @Test public void dropOldestHidesShowingToastOfLowerPriorityThanPendingToasts() {
+    tester.newQueue(new QueueConfig.Builder().capacity(2, OverflowPolicy.DROP_OLDEST));
+    Toasted a = tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000, HIGH, false);
+    tester.assertOnScreen("A");
+
+    tester.enqueue("C", 1_000);
+
+    assertFalse(a.cancel());
+    assertEquals(1, tester.queue.droppedCount());
+    tester.assertShowingInOrder("B", "C");
+  }
+
+  @Test public void dropOldestDropsInterruptedToastOfLowestPriority() {
+    tester.newQueue(new QueueConfig.Builder().capacity(3, OverflowPolicy.DROP_OLDEST));
+    Toasted a = tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000, HIGH, false);
+    tester.enqueue("C", 1_000, HIGH, true);
+
+    tester.enqueue("D", 1_000, HIGH, false);
+
+    assertFalse(a.cancel());
+    tester.assertShowingInOrder("B", "C", "D");
+  }
+
+  @Test public void dropOldestDropsToastHiddenByPauseOfLowestPriority() {
+    tester.newQueue(new QueueConfig.Builder().capacity(2, OverflowPolicy.DROP_OLDEST));
+    Toasted a = tester.enqueue("A", 1_000);
+    tester.enqueue("B", 1_000, HIGH, false);
+    // A stays ahead of B, to show again first on resume.
+    tester.queue.pause();
+
+    tester.enqueue("C", 1_000, HIGH, false);
+    tester.queue.resume();
+
+    assertFalse(a.cancel());
+    tester.assertShowingInOrder("B", "C");
+  }
+}
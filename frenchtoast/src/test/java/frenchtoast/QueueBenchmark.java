@@ -0,0 +1,159 @@
+package frenchtoast;
+
+import android.widget.Toast;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static frenchtoast.LifecycleToastQueue.DEFAULT_PRIORITY;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures the queue operations at different queue depths. The queues are paused, so that the
+ * operations only change the queue, except for pause and resume which hide and show a toast.
+ *
+ * @see BenchmarkRunner
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class QueueBenchmark {
+
+  private static final int[] DEPTHS = { 0, 1, 10, 100, 1_000 };
+  private static final long DURATION_MS = 2_000;
+
+  private BenchmarkRunner runner;
+  private Mixture mixture;
+  private Mixture otherMixture;
+
+  @Before public void setUp() {
+    assumeTrue("Run with -Dfrenchtoast.benchmark=true", BenchmarkRunner.enabled());
+    runner = new BenchmarkRunner();
+    mixture = newMixture();
+    otherMixture = newMixture();
+  }
+
+  @Test public void enqueue() {
+    for (int depth : DEPTHS) {
+      final LifecycleToastQueue queue = pausedQueue(depth);
+      runner.run("enqueue", depth, new BenchmarkRunner.Operation() {
+        Toasted toasted;
+
+        @Override void prepare() {
+          if (toasted != null) {
+            toasted.cancel();
+          }
+        }
+
+        @Override void run() {
+          toasted = queue.enqueue(mixture, null, DURATION_MS, null, DEFAULT_PRIORITY, false);
+        }
+      });
+    }
+  }
+
+  /** A toast with a higher priority walks back past every pending toast. */
+  @Test public void enqueueHigherPriority() {
+    for (int depth : DEPTHS) {
+      final LifecycleToastQueue queue = pausedQueue(depth);
+      runner.run("enqueueHigherPriority", depth, new BenchmarkRunner.Operation() {
+        Toasted toasted;
+
+        @Override void prepare() {
+          if (toasted != null) {
+            toasted.cancel();
+          }
+        }
+
+        @Override void run() {
+          toasted =
+              queue.enqueue(mixture, null, DURATION_MS, null, DEFAULT_PRIORITY + 1, false);
+        }
+      });
+    }
+  }
+
+  @Test public void cancelToasted() {
+    for (int depth : DEPTHS) {
+      final LifecycleToastQueue queue = pausedQueue(depth);
+      runner.run("cancelToasted", depth, new BenchmarkRunner.Operation() {
+        Toasted toasted;
+
+        @Override void prepare() {
+          toasted = queue.enqueue(mixture, null, DURATION_MS, null, DEFAULT_PRIORITY, false);
+        }
+
+        @Override void run() {
+          toasted.cancel();
+        }
+      });
+    }
+  }
+
+  /** Cancels the last toast of the queue by its mixture, which walks the whole queue. */
+  @Test public void cancelMixture() {
+    for (int depth : DEPTHS) {
+      final LifecycleToastQueue queue = pausedQueue(depth);
+      runner.run("cancelMixture", depth, new BenchmarkRunner.Operation() {
+        @Override void prepare() {
+          queue.enqueue(otherMixture, null, DURATION_MS, null, DEFAULT_PRIORITY, false);
+        }
+
+        @Override void run() {
+          queue.cancel(otherMixture);
+        }
+      });
+    }
+  }
+
+  /** Hides the toast at the front of the queue and shows it again. */
+  @Test public void pauseResume() {
+    for (int depth : DEPTHS) {
+      final LifecycleToastQueue queue = pausedQueue(depth);
+      queue.resume();
+      runner.run("pauseResume", depth, new BenchmarkRunner.Operation() {
+        @Override void run() {
+          queue.pause();
+          queue.resume();
+        }
+      });
+      queue.clear();
+    }
+  }
+
+  @Test public void clear() {
+    for (final int depth : DEPTHS) {
+      final LifecycleToastQueue queue = pausedQueue(0);
+      runner.run("clear", depth, new BenchmarkRunner.Operation() {
+        @Override void prepare() {
+          fill(queue, mixture, depth);
+        }
+
+        @Override void run() {
+          queue.clear();
+        }
+      });
+    }
+  }
+
+  private LifecycleToastQueue pausedQueue(int depth) {
+    LifecycleToastQueue queue = new LifecycleToastQueue();
+    queue.pause();
+    fill(queue, mixture, depth);
+    return queue;
+  }
+
+  private static void fill(LifecycleToastQueue queue, Mixture mixture, int count) {
+    for (int i = 0; i < count; i++) {
+      queue.enqueue(mixture, null, DURATION_MS, null, DEFAULT_PRIORITY, false);
+    }
+  }
+
+  private static Mixture newMixture() {
+    return Mixture.dip(Toast.makeText(RuntimeEnvironment.application, "Benchmark",
+        Toast.LENGTH_SHORT));
+  }
+}
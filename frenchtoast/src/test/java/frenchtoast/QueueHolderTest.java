@@ -0,0 +1,91 @@
+package frenchtoast;
+
+import android.os.Bundle;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Calls the lifecycle callbacks of {@link FrenchToast.QueueHolder} the way activities do, and
+ * checks which queues outlive their activity.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class QueueHolderTest {
+
+  private ActivityTester tester;
+  private FrenchToast.QueueHolder queueHolder;
+
+  @Before public void setUp() {
+    tester = new ActivityTester();
+    queueHolder = tester.queueHolder;
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void queueIsRetainedAcrossConfigurationChange() {
+    RotatableActivity activity = tester.createActivity(null);
+    queueHolder.onActivityResumed(activity);
+    Toasted toasted = tester.enqueueToast(activity);
+    LifecycleToastQueue queue = tester.queueOf(activity);
+
+    Bundle outState = tester.rotate(activity);
+    RotatableActivity recreated = tester.createActivity(outState);
+
+    assertSame(queue, tester.queueOf(recreated));
+    tester.mainScheduler.advanceBy(0);
+    assertTrue(toasted.cancel());
+  }
+
+  @Test public void queueCreatedAfterStateIsSavedIsRetained() {
+    RotatableActivity activity = tester.createActivity(null);
+    queueHolder.onActivityResumed(activity);
+    activity.changingConfigurations = true;
+    queueHolder.onActivityPaused(activity);
+    Bundle outState = new Bundle();
+    queueHolder.onActivitySaveInstanceState(activity, outState);
+    // E.g. a toast shown from onStop().
+    Toasted toasted = tester.enqueueToast(activity);
+    LifecycleToastQueue queue = tester.queueOf(activity);
+    queueHolder.onActivityDestroyed(activity);
+
+    RotatableActivity recreated = tester.createActivity(outState);
+
+    assertSame(queue, tester.queueOf(recreated));
+    tester.mainScheduler.advanceBy(0);
+    assertTrue(toasted.cancel());
+  }
+
+  @Test public void retainedQueueIsClearedWhenNoActivityPicksItUp() {
+    RotatableActivity activity = tester.createActivity(null);
+    queueHolder.onActivityResumed(activity);
+    Toasted toasted = tester.enqueueToast(activity);
+
+    tester.rotate(activity);
+    tester.mainScheduler.advanceBy(0);
+
+    assertFalse(toasted.cancel());
+  }
+
+  @Test public void queueIsClearedWhenActivityIsDestroyedForGood() {
+    RotatableActivity activity = tester.createActivity(null);
+    queueHolder.onActivityResumed(activity);
+    Toasted toasted = tester.enqueueToast(activity);
+    queueHolder.onActivityPaused(activity);
+    queueHolder.onActivitySaveInstanceState(activity, new Bundle());
+
+    queueHolder.onActivityDestroyed(activity);
+
+    assertFalse(toasted.cancel());
+  }
+}
@@ -0,0 +1,129 @@
+package frenchtoast;
+
+import android.content.Context;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks which toasts a {@link LifecycleToastQueue} shows, in which order and until when, by
+ * adding toast views to a view group that stands for the screen and moving the virtual time of the
+ * main looper, which is paused until {@link #release()}.
+ */
+final class QueueTester {
+
+  static final int LOW = 0;
+  static final int HIGH = 1;
+
+  final Scheduler mainScheduler;
+  final Context appContext;
+  final Screen screen;
+  LifecycleToastQueue queue;
+
+  QueueTester() {
+    mainScheduler = Robolectric.getForegroundThreadScheduler();
+    mainScheduler.pause();
+    appContext = RuntimeEnvironment.application;
+    screen = new Screen(appContext);
+    queue = newQueue(new QueueConfig.Builder());
+  }
+
+  void release() {
+    mainScheduler.unPause();
+  }
+
+  /** Replaces the queue with a queue that has that config. */
+  LifecycleToastQueue newQueue(QueueConfig.Builder builder) {
+    queue = new LifecycleToastQueue(builder.build(), RobolectricClock.newToastScheduler(), screen);
+    return queue;
+  }
+
+  Toasted enqueue(String text, long durationMs) {
+    return enqueue(text, durationMs, LOW, false);
+  }
+
+  Toasted enqueue(String text, long durationMs, int priority, boolean interrupt) {
+    Toast toast = Toast.makeText(appContext, text, Toast.LENGTH_SHORT);
+    return queue.enqueue(Mixture.dip(toast), null, durationMs, null, priority, interrupt);
+  }
+
+  void advanceBy(long ms) {
+    mainScheduler.advanceBy(ms);
+  }
+
+  /**
+   * Runs the idle handlers of the main looper once, the way MessageQueue.next() does when the
+   * main thread goes idle. Robolectric never runs them by itself.
+   */
+  static void runIdleHandlers() {
+    MessageQueue messageQueue = Looper.myQueue();
+    List<MessageQueue.IdleHandler> idleHandlers;
+    try {
+      Field idleHandlersField = MessageQueue.class.getDeclaredField("mIdleHandlers");
+      idleHandlersField.setAccessible(true);
+      @SuppressWarnings("unchecked") List<MessageQueue.IdleHandler> registered =
+          (List<MessageQueue.IdleHandler>) idleHandlersField.get(messageQueue);
+      idleHandlers = registered;
+    } catch (ReflectiveOperationException e) {
+      throw new AssertionError(e);
+    }
+    for (MessageQueue.IdleHandler idleHandler : new ArrayList<>(idleHandlers)) {
+      if (!idleHandler.queueIdle()) {
+        messageQueue.removeIdleHandler(idleHandler);
+      }
+    }
+  }
+
+  /** Lets each toast time out in turn and checks the order in which they show. */
+  void assertShowingInOrder(String... texts) {
+    List<String> shown = new ArrayList<>();
+    while (screen.getChildCount() > 0) {
+      shown.add(textOf(screen.getChildAt(0)));
+      if (!mainScheduler.advanceToNextPostedRunnable()) {
+        fail("A toast is showing with no hide scheduled");
+      }
+    }
+    assertEquals(Arrays.asList(texts), shown);
+  }
+
+  void assertOnScreen(String... texts) {
+    List<String> onScreen = new ArrayList<>();
+    for (int i = 0; i < screen.getChildCount(); i++) {
+      onScreen.add(textOf(screen.getChildAt(i)));
+    }
+    assertEquals(Arrays.asList(texts), onScreen);
+  }
+
+  static String textOf(View toastView) {
+    TextView message = (TextView) toastView.findViewById(android.R.id.message);
+    return message.getText().toString();
+  }
+
+  /** Stands for the screen: holds the toast views that are showing, in the order they showed. */
+  static final class Screen extends ViewGroup {
+    Screen(Context context) {
+      super(context);
+    }
+
+    @Override protected void onLayout(boolean changed, int l, int t, int r, int b) {
+    }
+
+    /** Toasts are added with window params. */
+    @Override protected boolean checkLayoutParams(ViewGroup.LayoutParams params) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package frenchtoast;
+
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static frenchtoast.QueueTester.HIGH;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/** Checks how long a toast shows again after it was hidden before its time was up. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class RemainingTimeTest {
+
+  private QueueTester tester;
+
+  @Before public void setUp() {
+    tester = new QueueTester();
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void interruptedToastShowsAgainForRemainingTime() {
+    tester.newQueue(new QueueConfig.Builder().resumeWithRemainingTime(0, MILLISECONDS));
+    tester.enqueue("A", 1_000);
+    tester.advanceBy(400);
+
+    tester.enqueue("B", 1_000, HIGH, true);
+    tester.advanceBy(1_000);
+
+    tester.assertOnScreen("A");
+    tester.advanceBy(599);
+    tester.assertOnScreen("A");
+    tester.advanceBy(1);
+    tester.assertOnScreen();
+  }
+
+  @Test public void pausedToastShowsAgainForWholeDurationByDefault() {
+    tester.enqueue("A", 1_000);
+    tester.advanceBy(400);
+
+    tester.queue.pause();
+    tester.assertOnScreen();
+    tester.queue.resume();
+
+    tester.assertOnScreen("A");
+    tester.advanceBy(999);
+    tester.assertOnScreen("A");
+    tester.advanceBy(1);
+    tester.assertOnScreen();
+  }
+
+  @Test public void pausedToastShowsAgainForRemainingTime() {
+    tester.newQueue(new QueueConfig.Builder().resumeWithRemainingTime(0, MILLISECONDS));
+    tester.enqueue("A", 1_000);
+    tester.advanceBy(400);
+
+    tester.queue.pause();
+    tester.advanceBy(5_000);
+    tester.queue.resume();
+
+    tester.assertOnScreen("A");
+    tester.advanceBy(599);
+    tester.assertOnScreen("A");
+    tester.advanceBy(1);
+    tester.assertOnScreen();
+  }
+
+  @Test public void remainingTimeIsAtLeastMinVisible() {
+    tester.newQueue(new QueueConfig.Builder().resumeWithRemainingTime(300, MILLISECONDS));
+    tester.enqueue("A", 1_000);
+    tester.advanceBy(900);
+
+    tester.queue.pause();
+    tester.queue.resume();
+
+    tester.advanceBy(299);
+    tester.assertOnScreen("A");
+    tester.advanceBy(1);
+    tester.assertOnScreen();
+  }
+
+  @Test public void remainingTimeAddsUpOverSeveralPauses() {
+    tester.newQueue(new QueueConfig.Builder().resumeWithRemainingTime(0, MILLISECONDS));
+    tester.enqueue("A", 1_000);
+    tester.advanceBy(300);
+    tester.queue.pause();
+    tester.queue.resume();
+    tester.advanceBy(300);
+
+    tester.queue.pause();
+    tester.queue.resume();
+
+    tester.advanceBy(399);
+    tester.assertOnScreen("A");
+    tester.advanceBy(1);
+    tester.assertOnScreen();
+  }
+}
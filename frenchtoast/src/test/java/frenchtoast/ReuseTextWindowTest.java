@@ -0,0 +1,75 @@
+package frenchtoast;
+
+import android.view.View;
+import android.widget.Toast;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/** Checks when a text toast takes over the window of the text toast that hides before it. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class ReuseTextWindowTest {
+
+  private final ViewPool viewPool = new ViewPool();
+  private QueueTester tester;
+
+  @Before public void setUp() {
+    tester = new QueueTester();
+    tester.newQueue(new QueueConfig.Builder().reuseTextWindow(true));
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void nextTextToastShowsInWindowOfHiddenTextToast() {
+    enqueueText("A");
+    enqueueText("B");
+    View window = tester.screen.getChildAt(0);
+
+    tester.advanceBy(1_000);
+
+    tester.assertOnScreen("B");
+    assertSame(window, tester.screen.getChildAt(0));
+    tester.advanceBy(1_000);
+    tester.assertOnScreen();
+  }
+
+  @Test public void dippedToastGetsItsOwnWindow() {
+    enqueueText("A");
+    Toast toast = Toast.makeText(tester.appContext, "B", Toast.LENGTH_SHORT);
+    tester.queue.enqueue(Mixture.dip(toast), 1_000);
+    View window = tester.screen.getChildAt(0);
+
+    tester.advanceBy(1_000);
+
+    tester.assertOnScreen("B");
+    assertNotSame(window, tester.screen.getChildAt(0));
+  }
+
+  @Test public void nextTextToastWaitsForResumeInItsOwnWindow() {
+    enqueueText("A");
+    enqueueText("B");
+    View window = tester.screen.getChildAt(0);
+    tester.queue.pauseForConfigurationChange();
+
+    tester.advanceBy(1_000);
+    tester.assertOnScreen();
+    tester.queue.resume();
+
+    tester.assertOnScreen("B");
+    assertNotSame(window, tester.screen.getChildAt(0));
+  }
+
+  private void enqueueText(String text) {
+    tester.queue.enqueue(viewPool.mixText(tester.appContext, text), 1_000);
+  }
+}
@@ -0,0 +1,17 @@
+package frenchtoast;
+
+import android.os.Looper;
+import org.robolectric.Robolectric;
+
+/** The virtual time of the Robolectric main looper, so that tests decide when toasts hide. */
+final class RobolectricClock implements ToastScheduler.Clock {
+
+  /** Returns a scheduler that runs toast timers on the main looper, in its virtual time. */
+  static ToastScheduler newToastScheduler() {
+    return new ToastScheduler(new RobolectricClock(), Looper.getMainLooper());
+  }
+
+  @Override public long uptimeMillis() {
+    return Robolectric.getForegroundThreadScheduler().getCurrentTime();
+  }
+}
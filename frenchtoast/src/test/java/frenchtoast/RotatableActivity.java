@@ -0,0 +1,13 @@
+package frenchtoast;
+
+import android.app.Activity;
+
+/** An activity that can pretend to be destroyed for a configuration change. */
+public final class RotatableActivity extends Activity {
+
+  boolean changingConfigurations;
+
+  @Override public boolean isChangingConfigurations() {
+    return changingConfigurations;
+  }
+}
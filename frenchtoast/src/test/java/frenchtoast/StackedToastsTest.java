@@ -0,0 +1,103 @@
+package frenchtoast;
+
+import android.view.View;
+import android.view.WindowManager;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static frenchtoast.QueueTester.HIGH;
+import static org.junit.Assert.assertEquals;
+
+/** Checks that stacked toasts each show for their own duration, without overlapping. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class StackedToastsTest {
+
+  private QueueTester tester;
+
+  @Before public void setUp() {
+    tester = new QueueTester();
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void dropOldestHidesShowingToastOfLowestPriorityWhenAllAreShowing() {
+    tester.newQueue(new QueueConfig.Builder()
+        .capacity(2, OverflowPolicy.DROP_OLDEST)
+        .maxVisible(2));
+    tester.enqueue("A", 1_000, HIGH, false);
+    tester.enqueue("B", 1_000);
+    tester.assertOnScreen("A", "B");
+
+    tester.enqueue("C", 1_000);
+
+    tester.assertOnScreen("A", "C");
+    assertEquals(1, tester.queue.droppedCount());
+  }
+
+  @Test public void stackedToastsHideAtTheirOwnTime() {
+    tester.newQueue(new QueueConfig.Builder().maxVisible(2));
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 3_000);
+    tester.enqueue("C", 1_000);
+
+    tester.assertOnScreen("A", "B");
+    tester.advanceBy(999);
+    tester.assertOnScreen("A", "B");
+    tester.advanceBy(1);
+    // C takes the free slot and hides 1000 ms later, before B.
+    tester.assertOnScreen("B", "C");
+    tester.advanceBy(999);
+    tester.assertOnScreen("B", "C");
+    tester.advanceBy(1);
+    tester.assertOnScreen("B");
+    tester.advanceBy(1_000);
+    tester.assertOnScreen();
+  }
+
+  @Test public void canceledStackedToastLetsNextToastShow() {
+    tester.newQueue(new QueueConfig.Builder().maxVisible(2));
+    Toasted a = tester.enqueue("A", 1_000);
+    tester.enqueue("B", 2_000);
+    tester.enqueue("C", 2_000);
+    tester.advanceBy(500);
+
+    a.cancel();
+
+    tester.assertOnScreen("B", "C");
+    tester.advanceBy(1_500);
+    tester.assertOnScreen("C");
+    tester.advanceBy(500);
+    tester.assertOnScreen();
+  }
+
+  @Test public void stackedToastsAreOffsetByTheHeightOfTheToastsBefore() {
+    tester.newQueue(new QueueConfig.Builder().maxVisible(3));
+    tester.enqueue("A", 1_000);
+    tester.enqueue("B", 2_000);
+    tester.enqueue("C", 3_000);
+    View a = tester.screen.getChildAt(0);
+    View b = tester.screen.getChildAt(1);
+    View c = tester.screen.getChildAt(2);
+    int firstY = yOf(a);
+
+    assertEquals(firstY + a.getMeasuredHeight(), yOf(b));
+    assertEquals(firstY + a.getMeasuredHeight() + b.getMeasuredHeight(), yOf(c));
+    tester.advanceBy(1_000);
+    // The remaining toasts move up into the free space.
+    assertEquals(firstY, yOf(b));
+    assertEquals(firstY + b.getMeasuredHeight(), yOf(c));
+  }
+
+  /** The y offset of the toast, which includes its stack offset. */
+  private static int yOf(View toastView) {
+    return ((WindowManager.LayoutParams) toastView.getLayoutParams()).y;
+  }
+}
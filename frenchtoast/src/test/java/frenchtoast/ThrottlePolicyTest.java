@@ -0,0 +1,133 @@
+package frenchtoast;
+
+import info.piwai.frenchtoast.BuildConfig;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the ring buffer of {@link FrenchToast.Throttle}, and how {@link FrenchToast.QueueHolder}
+ * throttles and counts each category.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class ThrottlePolicyTest {
+
+  private final FrenchToast.Throttle throttle = new FrenchToast.Throttle();
+  private final List<Object> throttledCategories = new ArrayList<>();
+  private Scheduler mainScheduler;
+  private FrenchToast.QueueHolder queueHolder;
+
+  @Before public void setUp() {
+    mainScheduler = Robolectric.getForegroundThreadScheduler();
+    mainScheduler.pause();
+    QueueConfig config = new QueueConfig.Builder()
+        .scheduler(RobolectricClock.newToastScheduler())
+        .metrics(new ToastMetrics() {
+          @Override public void onThrottled(Object category) {
+            throttledCategories.add(category);
+          }
+        })
+        .build();
+    queueHolder = new FrenchToast.QueueHolder(config);
+  }
+
+  @After public void tearDown() {
+    mainScheduler.unPause();
+  }
+
+  @Test public void atMostMaxToastsPerWindow() {
+    ThrottlePolicy policy = maxToasts(2, 1_000);
+
+    assertTrue(throttle.tryAcquire(policy, 0));
+    assertTrue(throttle.tryAcquire(policy, 100));
+    assertFalse(throttle.tryAcquire(policy, 999));
+    // The window of the first toast is over.
+    assertTrue(throttle.tryAcquire(policy, 1_000));
+    assertFalse(throttle.tryAcquire(policy, 1_099));
+    assertTrue(throttle.tryAcquire(policy, 1_100));
+  }
+
+  @Test public void throttledToastsAreNotRecorded() {
+    ThrottlePolicy policy = maxToasts(1, 1_000);
+
+    assertTrue(throttle.tryAcquire(policy, 0));
+    assertFalse(throttle.tryAcquire(policy, 500));
+    assertTrue(throttle.tryAcquire(policy, 1_000));
+  }
+
+  @Test public void policyWithMoreToastsForgetsPreviousToasts() {
+    ThrottlePolicy policy = maxToasts(2, 1_000);
+    assertTrue(throttle.tryAcquire(policy, 0));
+    assertTrue(throttle.tryAcquire(policy, 100));
+
+    ThrottlePolicy largerPolicy = maxToasts(3, 1_000);
+
+    assertTrue(throttle.tryAcquire(largerPolicy, 200));
+    assertTrue(throttle.tryAcquire(largerPolicy, 300));
+    assertTrue(throttle.tryAcquire(largerPolicy, 400));
+    assertFalse(throttle.tryAcquire(largerPolicy, 500));
+    assertTrue(throttle.tryAcquire(largerPolicy, 1_200));
+  }
+
+  @Test public void policyWithFewerToastsForgetsPreviousToasts() {
+    ThrottlePolicy policy = maxToasts(3, 1_000);
+    assertTrue(throttle.tryAcquire(policy, 0));
+    assertTrue(throttle.tryAcquire(policy, 100));
+    assertTrue(throttle.tryAcquire(policy, 200));
+
+    ThrottlePolicy smallerPolicy = maxToasts(1, 1_000);
+
+    assertTrue(throttle.tryAcquire(smallerPolicy, 300));
+    assertFalse(throttle.tryAcquire(smallerPolicy, 1_299));
+    assertTrue(throttle.tryAcquire(smallerPolicy, 1_300));
+  }
+
+  @Test public void minGapCarriesOverPolicyChange() {
+    assertTrue(throttle.tryAcquire(maxToasts(2, 1_000), 0));
+
+    ThrottlePolicy gapPolicy = new ThrottlePolicy.Builder().minGap(500, MILLISECONDS).build();
+
+    assertFalse(throttle.tryAcquire(gapPolicy, 499));
+    assertTrue(throttle.tryAcquire(gapPolicy, 500));
+    assertFalse(throttle.tryAcquire(gapPolicy, 999));
+  }
+
+  @Test public void categoriesAreThrottledSeparately() {
+    ThrottlePolicy policy = maxToasts(1, 1_000);
+
+    assertFalse(queueHolder.throttle("downloads", policy));
+    assertFalse(queueHolder.throttle("errors", policy));
+    assertTrue(queueHolder.throttle("downloads", policy));
+  }
+
+  @Test public void throttledToastsAreCountedAndReported() {
+    ThrottlePolicy policy = maxToasts(1, 1_000);
+    queueHolder.throttle("errors", policy);
+
+    assertTrue(queueHolder.throttle("errors", policy));
+    assertTrue(queueHolder.throttle("errors", policy));
+    mainScheduler.advanceBy(1_000);
+    assertFalse(queueHolder.throttle("errors", policy));
+
+    assertEquals(2, queueHolder.throttles.get("errors").throttledCount);
+    assertEquals(Arrays.<Object>asList("errors", "errors"), throttledCategories);
+  }
+
+  private static ThrottlePolicy maxToasts(int maxToasts, long windowMs) {
+    return new ThrottlePolicy.Builder().maxToasts(maxToasts, windowMs, MILLISECONDS).build();
+  }
+}
@@ -0,0 +1,112 @@
+package frenchtoast;
+
+import android.os.Looper;
+import info.piwai.frenchtoast.BuildConfig;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.Scheduler;
+
+import static org.junit.Assert.assertEquals;
+
+/** Checks that the timers of a scheduler run in order, from a single message on the looper. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class ToastSchedulerTest {
+
+  private final List<String> ran = new ArrayList<>();
+  private Scheduler mainScheduler;
+  private ToastScheduler scheduler;
+
+  @Before public void setUp() {
+    mainScheduler = Robolectric.getForegroundThreadScheduler();
+    mainScheduler.pause();
+    scheduler = RobolectricClock.newToastScheduler();
+  }
+
+  @After public void tearDown() {
+    mainScheduler.unPause();
+  }
+
+  @Test public void timersShareOneMessage() {
+    scheduler.schedule(timer("A"), 100);
+    scheduler.schedule(timer("B"), 200);
+
+    assertEquals(1, mainScheduler.size());
+    mainScheduler.advanceBy(100);
+    assertEquals(Arrays.asList("A"), ran);
+    assertEquals(1, mainScheduler.size());
+    mainScheduler.advanceBy(100);
+    assertEquals(Arrays.asList("A", "B"), ran);
+    assertEquals(0, mainScheduler.size());
+  }
+
+  @Test public void earlierTimerRunsFirst() {
+    scheduler.schedule(timer("A"), 200);
+    scheduler.schedule(timer("B"), 100);
+
+    mainScheduler.advanceBy(200);
+
+    assertEquals(Arrays.asList("B", "A"), ran);
+  }
+
+  @Test public void canceledTimerDoesNotRun() {
+    ToastScheduler.Timer timer = timer("A");
+    scheduler.schedule(timer, 100);
+    scheduler.schedule(timer("B"), 200);
+
+    scheduler.cancel(timer);
+    mainScheduler.advanceBy(200);
+
+    assertEquals(Arrays.asList("B"), ran);
+  }
+
+  @Test public void rescheduledTimerRunsOnceAtItsNewDeadline() {
+    ToastScheduler.Timer timer = timer("A");
+    scheduler.schedule(timer, 100);
+
+    scheduler.schedule(timer, 300);
+    mainScheduler.advanceBy(299);
+    assertEquals(Arrays.<String>asList(), ran);
+    mainScheduler.advanceBy(1);
+
+    assertEquals(Arrays.asList("A"), ran);
+  }
+
+  @Test public void timersFollowTheirClock() {
+    ManualClock clock = new ManualClock();
+    scheduler = new ToastScheduler(clock, Looper.getMainLooper());
+    scheduler.schedule(timer("A"), 100);
+
+    // The looper moved on, but the clock of the scheduler did not.
+    mainScheduler.advanceBy(100);
+    assertEquals(Arrays.<String>asList(), ran);
+    clock.uptimeMs = 100;
+    mainScheduler.advanceBy(100);
+
+    assertEquals(Arrays.asList("A"), ran);
+  }
+
+  private ToastScheduler.Timer timer(final String name) {
+    return new ToastScheduler.Timer(new Runnable() {
+      @Override public void run() {
+        ran.add(name);
+      }
+    });
+  }
+
+  static final class ManualClock implements ToastScheduler.Clock {
+    long uptimeMs;
+
+    @Override public long uptimeMillis() {
+      return uptimeMs;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package frenchtoast;
+
+import android.content.ContextWrapper;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/** Checks which toasters {@link FrenchToast.QueueHolder#toaster} returns, and until when. */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class ToasterCacheTest {
+
+  private ActivityTester tester;
+  private FrenchToast.QueueHolder queueHolder;
+  private RotatableActivity activity;
+  private FrenchToast.Holder holder;
+
+  @Before public void setUp() {
+    tester = new ActivityTester();
+    queueHolder = tester.queueHolder;
+    activity = tester.createActivity(null);
+    holder = tester.holderOf(activity);
+  }
+
+  @After public void tearDown() {
+    tester.release();
+  }
+
+  @Test public void sameContextGetsTheCachedToaster() {
+    FrenchToast.ActivityToaster toaster = queueHolder.toaster(activity);
+
+    assertSame(holder.longToaster, toaster);
+    assertSame(toaster, queueHolder.toaster(activity));
+  }
+
+  @Test public void wrappedContextGetsTheToasterOfItsActivity() {
+    ContextWrapper wrapper = new ContextWrapper(activity);
+
+    assertSame(holder.longToaster, queueHolder.toaster(wrapper));
+    assertSame(holder.longToaster, queueHolder.toaster(wrapper));
+    assertSame(holder.longToaster, queueHolder.toaster(activity));
+  }
+
+  @Test public void cacheIsInvalidatedWhenActivityIsDestroyed() {
+    queueHolder.toaster(activity);
+
+    queueHolder.onActivityDestroyed(activity);
+
+    try {
+      queueHolder.toaster(activity);
+      fail();
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  @Test public void defaultDurationsGetTheCachedToasters() {
+    FrenchToast.ActivityToaster toaster = queueHolder.toaster(activity);
+
+    assertSame(holder.shortToaster, toaster.shortLength());
+    assertSame(holder.longToaster, toaster.longLength());
+    assertSame(holder.shortToaster, toaster.length(ToastOptions.ANDROID_SHORT_DELAY_MS,
+        MILLISECONDS));
+    assertSame(holder.longToaster, holder.shortToaster.longLength());
+  }
+
+  @Test public void configuringReturnsCopyAndLeavesDefaultsUntouched() {
+    FrenchToast.ActivityToaster toaster = queueHolder.toaster(activity);
+
+    SmartToaster prioritized = toaster.priority(QueueTester.HIGH);
+
+    assertNotSame(toaster, prioritized);
+    assertNotSame(holder.shortToaster, prioritized.shortLength());
+    assertSame(ToastOptions.LONG, holder.longToaster.options);
+    assertSame(ToastOptions.SHORT, holder.shortToaster.options);
+    assertSame(holder.longToaster, queueHolder.toaster(activity));
+  }
+
+  @Test public void toasterUsedAfterActivityIsDestroyedThrows() {
+    FrenchToast.ActivityToaster toaster = queueHolder.toaster(activity);
+
+    queueHolder.onActivityDestroyed(activity);
+
+    try {
+      toaster.showText("Toast");
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+  }
+}
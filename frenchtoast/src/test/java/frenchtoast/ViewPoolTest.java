@@ -0,0 +1,53 @@
+package frenchtoast;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.view.View;
+import info.piwai.frenchtoast.BuildConfig;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public final class ViewPoolTest {
+
+  private final ViewPool viewPool = new ViewPool();
+  private Context appContext;
+
+  @Before public void setUp() {
+    appContext = RuntimeEnvironment.application;
+  }
+
+  @Test public void releasedViewIsRecycled() {
+    viewPool.mixText(appContext, "Hello").release();
+
+    assertNotNull(viewPool.obtain(ViewPool.TEXT_LAYOUT));
+  }
+
+  @Test public void viewOutDuringConfigurationChangeIsDropped() {
+    Mixture mixture = viewPool.mixText(appContext, "Hello");
+
+    viewPool.onConfigurationChanged(new Configuration());
+    mixture.release();
+
+    assertNull(viewPool.obtain(ViewPool.TEXT_LAYOUT));
+  }
+
+  @Test public void viewObtainedAfterConfigurationChangeIsRecycled() {
+    viewPool.mixText(appContext, "Hello").release();
+    viewPool.onConfigurationChanged(new Configuration());
+    Mixture mixture = viewPool.mixText(appContext, "Hello");
+
+    mixture.release();
+
+    View recycled = viewPool.obtain(ViewPool.TEXT_LAYOUT);
+    assertNotNull(recycled);
+  }
+}